@@ -0,0 +1,105 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.optaplanner.springbootcloudbalancing.domain;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Measures the Jackson round trips of a {@link CloudBalance}, as the REST endpoints do them,
+ * in the default representation and in the {@link CompactCloudBalanceModule compact representations}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CloudBalanceJsonBenchmark {
+
+    @Param({"10", "100", "1000", "10000", "100000"})
+    private int processListSize;
+    @Param({"DEFAULT_JSON", "COMPACT_JSON", "COMPACT_SMILE"})
+    private WireFormat wireFormat;
+
+    private ObjectMapper objectMapper;
+    private CloudBalance solution;
+    private byte[] solutionBytes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        objectMapper = wireFormat.buildObjectMapper();
+        solution = new CloudBalanceGenerator(37L).generate(0L, processListSize);
+        List<CloudComputer> computerList = solution.getComputerList();
+        Random random = new Random(37L);
+        for (CloudProcess process : solution.getProcessList()) {
+            process.setComputer(computerList.get(random.nextInt(computerList.size())));
+        }
+        solutionBytes = objectMapper.writeValueAsBytes(solution);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return objectMapper.writeValueAsBytes(solution);
+    }
+
+    @Benchmark
+    public CloudBalance deserialize() throws IOException {
+        CloudBalance deserializedSolution = objectMapper.readValue(solutionBytes, CloudBalance.class);
+        if (wireFormat == WireFormat.DEFAULT_JSON) {
+            deserializedSolution.resolveComputerReferences();
+        }
+        return deserializedSolution;
+    }
+
+    public enum WireFormat {
+        DEFAULT_JSON,
+        COMPACT_JSON,
+        COMPACT_SMILE;
+
+        private ObjectMapper buildObjectMapper() {
+            // Configured like the ObjectMapper of Spring Boot
+            switch (this) {
+                case DEFAULT_JSON:
+                    return Jackson2ObjectMapperBuilder.json().build();
+                case COMPACT_JSON:
+                    return Jackson2ObjectMapperBuilder.json().modulesToInstall(new CompactCloudBalanceModule()).build();
+                case COMPACT_SMILE:
+                    return Jackson2ObjectMapperBuilder.smile().modulesToInstall(new CompactCloudBalanceModule()).build();
+                default:
+                    throw new IllegalStateException("The wireFormat (" + this + ") is not implemented.");
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.optaplanner.springbootcloudbalancing.solver;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.optaplanner.core.api.solver.Solver;
+import org.optaplanner.core.api.solver.SolverFactory;
+import org.optaplanner.springbootcloudbalancing.domain.CloudBalance;
+
+/**
+ * Measures the cost of {@link SolverFactory#buildSolver()} per submitted problem,
+ * with the solver configuration as is and after the warm-up of {@link DefaultSolverManager}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BuildSolverBenchmark {
+
+    private static final String SOLVER_CONFIG = "org/optaplanner/springbootcloudbalancing/solver/cloudBalancingSolverConfig.xml";
+
+    private SolverFactory<CloudBalance> solverFactory;
+    private SolverFactory<CloudBalance> warmSolverFactory;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        solverFactory = SolverFactory.createFromXmlResource(SOLVER_CONFIG,
+                BuildSolverBenchmark.class.getClassLoader());
+        warmSolverFactory = SolverFactory.createFromXmlResource(SOLVER_CONFIG,
+                BuildSolverBenchmark.class.getClassLoader());
+        DefaultSolverManager.reuseBuiltSolver(warmSolverFactory, warmSolverFactory.buildSolver());
+    }
+
+    @Benchmark
+    public Solver<CloudBalance> buildSolver() {
+        return solverFactory.buildSolver();
+    }
+
+    @Benchmark
+    public Solver<CloudBalance> buildSolverAfterWarmUp() {
+        return warmSolverFactory.buildSolver();
+    }
+}
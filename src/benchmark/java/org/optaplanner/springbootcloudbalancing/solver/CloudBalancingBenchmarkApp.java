@@ -0,0 +1,73 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.optaplanner.springbootcloudbalancing.solver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.optaplanner.benchmark.api.PlannerBenchmark;
+import org.optaplanner.benchmark.api.PlannerBenchmarkFactory;
+import org.optaplanner.springbootcloudbalancing.domain.CloudBalance;
+import org.optaplanner.springbootcloudbalancing.domain.CloudBalanceGenerator;
+
+/**
+ * Benchmarks the solver configurations of the benchmark config on generated problems
+ * and writes the benchmark report to target/benchmarks.
+ * <p>
+ * The arguments are the dataset tiers to generate, small and medium by default.
+ */
+public class CloudBalancingBenchmarkApp {
+
+    private static final String BENCHMARK_CONFIG = "org/optaplanner/springbootcloudbalancing/solver/cloudBalancingBenchmarkConfig.xml";
+
+    public enum DatasetTier {
+        SMALL(100, 300),
+        MEDIUM(800, 2400),
+        LARGE(2000, 6000),
+        HUGE(10000, 30000);
+
+        private final int computerListSize;
+        private final int processListSize;
+
+        DatasetTier(int computerListSize, int processListSize) {
+            this.computerListSize = computerListSize;
+            this.processListSize = processListSize;
+        }
+    }
+
+    public static void main(String[] args) {
+        List<DatasetTier> datasetTierList = new ArrayList<>();
+        if (args.length == 0) {
+            datasetTierList.addAll(Arrays.asList(DatasetTier.SMALL, DatasetTier.MEDIUM));
+        } else {
+            for (String arg : args) {
+                datasetTierList.add(DatasetTier.valueOf(arg.toUpperCase()));
+            }
+        }
+        List<CloudBalance> problemList = new ArrayList<>(datasetTierList.size());
+        for (DatasetTier datasetTier : datasetTierList) {
+            // The same seed per tier, so every run benchmarks the same problems
+            problemList.add(new CloudBalanceGenerator(datasetTier.ordinal()).generate(datasetTier.ordinal(),
+                    datasetTier.computerListSize, datasetTier.processListSize));
+        }
+        PlannerBenchmarkFactory plannerBenchmarkFactory = PlannerBenchmarkFactory.createFromXmlResource(
+                BENCHMARK_CONFIG, CloudBalancingBenchmarkApp.class.getClassLoader());
+        PlannerBenchmark plannerBenchmark = plannerBenchmarkFactory.buildPlannerBenchmark(problemList);
+        plannerBenchmark.benchmark();
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.optaplanner.springbootcloudbalancing.solver;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.optaplanner.core.api.score.Score;
+import org.optaplanner.core.api.solver.SolverFactory;
+import org.optaplanner.core.config.score.director.ScoreDirectorFactoryConfig;
+import org.optaplanner.core.impl.score.director.InnerScoreDirector;
+import org.optaplanner.core.impl.score.director.InnerScoreDirectorFactory;
+import org.optaplanner.springbootcloudbalancing.domain.CloudBalance;
+import org.optaplanner.springbootcloudbalancing.domain.CloudBalanceGenerator;
+import org.optaplanner.springbootcloudbalancing.domain.CloudComputer;
+import org.optaplanner.springbootcloudbalancing.domain.CloudProcess;
+import org.optaplanner.springbootcloudbalancing.solver.score.CloudBalancingIncrementalScoreCalculator;
+
+/**
+ * Measures the score calculation speed of the score DRL and of the incremental score calculator,
+ * both for a single change move, as during local search, and for a full calculation from scratch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScoreCalculationBenchmark {
+
+    private static final String SOLVER_CONFIG = "org/optaplanner/springbootcloudbalancing/solver/cloudBalancingSolverConfig.xml";
+
+    public enum ScoreCalculatorType {
+        DRL,
+        INCREMENTAL
+    }
+
+    @Param({"10", "100", "1000", "10000", "100000"})
+    private int processListSize;
+    @Param
+    private ScoreCalculatorType scoreCalculatorType;
+
+    private InnerScoreDirector<CloudBalance> scoreDirector;
+    private CloudBalance solution;
+    private List<CloudComputer> computerList;
+    private List<CloudProcess> processList;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SolverFactory<CloudBalance> solverFactory = SolverFactory.createFromXmlResource(SOLVER_CONFIG,
+                ScoreCalculationBenchmark.class.getClassLoader());
+        if (scoreCalculatorType == ScoreCalculatorType.INCREMENTAL) {
+            ScoreDirectorFactoryConfig scoreDirectorFactoryConfig
+                    = solverFactory.getSolverConfig().getScoreDirectorFactoryConfig();
+            scoreDirectorFactoryConfig.setScoreDrlList(null);
+            scoreDirectorFactoryConfig.setIncrementalScoreCalculatorClass(
+                    CloudBalancingIncrementalScoreCalculator.class);
+        }
+        InnerScoreDirectorFactory<CloudBalance> scoreDirectorFactory
+                = (InnerScoreDirectorFactory<CloudBalance>) solverFactory.buildSolver().getScoreDirectorFactory();
+        scoreDirector = scoreDirectorFactory.buildScoreDirector();
+        solution = new CloudBalanceGenerator(37L).generate(0L, processListSize);
+        computerList = solution.getComputerList();
+        processList = solution.getProcessList();
+        random = new Random(37L);
+        for (CloudProcess process : processList) {
+            process.setComputer(computerList.get(random.nextInt(computerList.size())));
+        }
+        scoreDirector.setWorkingSolution(solution);
+        scoreDirector.calculateScore();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        scoreDirector.close();
+    }
+
+    @Benchmark
+    public Score changeMove() {
+        CloudProcess process = processList.get(random.nextInt(processList.size()));
+        scoreDirector.beforeVariableChanged(process, "computer");
+        process.setComputer(computerList.get(random.nextInt(computerList.size())));
+        scoreDirector.afterVariableChanged(process, "computer");
+        scoreDirector.triggerVariableListeners();
+        return scoreDirector.calculateScore();
+    }
+
+    @Benchmark
+    public Score fullCalculation() {
+        scoreDirector.setWorkingSolution(solution);
+        return scoreDirector.calculateScore();
+    }
+}
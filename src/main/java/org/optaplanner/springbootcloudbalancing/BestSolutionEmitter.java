@@ -0,0 +1,154 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.optaplanner.springbootcloudbalancing;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import org.optaplanner.springbootcloudbalancing.domain.CloudBalance;
+import org.optaplanner.springbootcloudbalancing.solver.BestSolutionSnapshot;
+import org.optaplanner.springbootcloudbalancing.solver.SolverStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Streams the best solutions of one tenant to one client as Server-Sent Events.
+ * <p>
+ * Best solutions are coalesced: the solver thread only replaces the pending best solution,
+ * so a slow client skips intermediate best solutions and only receives the latest one.
+ * The event id is the version of the best solution.
+ * <p>
+ * A send that the client does not take within the send timeout closes the stream,
+ * so a stalled client gets nothing more and holds at most one sender thread, until its send fails.
+ */
+class BestSolutionEmitter implements Consumer<BestSolutionSnapshot<CloudBalance>> {
+
+    private static final Logger logger = LoggerFactory.getLogger(BestSolutionEmitter.class);
+
+    private final SseEmitter sseEmitter;
+    private final boolean includeSolution;
+    private final Executor senderExecutor;
+    private final ScheduledExecutorService timeoutExecutor;
+    private final long sendTimeoutMillis;
+
+    private final AtomicReference<BestSolutionSnapshot<CloudBalance>> pendingBestSolution = new AtomicReference<>();
+    private final AtomicBoolean sending = new AtomicBoolean(false);
+    private volatile boolean terminated = false;
+    private volatile boolean closed = false;
+
+    /**
+     * @param senderExecutor must not queue a send behind the blocked send of another stream
+     * @param timeoutExecutor only closes the streams with a stalled send
+     */
+    BestSolutionEmitter(SseEmitter sseEmitter, boolean includeSolution, Executor senderExecutor,
+            ScheduledExecutorService timeoutExecutor, long sendTimeoutMillis) {
+        this.sseEmitter = sseEmitter;
+        this.includeSolution = includeSolution;
+        this.senderExecutor = senderExecutor;
+        this.timeoutExecutor = timeoutExecutor;
+        this.sendTimeoutMillis = sendTimeoutMillis;
+    }
+
+    @Override
+    public void accept(BestSolutionSnapshot<CloudBalance> bestSolutionSnapshot) {
+        if (closed) {
+            return;
+        }
+        pendingBestSolution.set(bestSolutionSnapshot);
+        scheduleSending();
+    }
+
+    /**
+     * Sends the pending best solution, if any, and then ends the stream.
+     */
+    public void solverTerminated() {
+        terminated = true;
+        scheduleSending();
+    }
+
+    public void close() {
+        closed = true;
+        pendingBestSolution.set(null);
+    }
+
+    private void scheduleSending() {
+        if (!closed && sending.compareAndSet(false, true)) {
+            senderExecutor.execute(this::sendPending);
+        }
+    }
+
+    private void sendPending() {
+        do {
+            try {
+                BestSolutionSnapshot<CloudBalance> bestSolution;
+                while (!closed && (bestSolution = pendingBestSolution.getAndSet(null)) != null) {
+                    String id = Long.toString(bestSolution.getVersion());
+                    send(SseEmitter.event().id(id).name("bestScore")
+                            .data(bestSolution.getScoreJson(), MediaType.APPLICATION_JSON));
+                    if (includeSolution) {
+                        send(SseEmitter.event().id(id).name("bestSolution")
+                                .data(bestSolution.getSolutionJson(), MediaType.APPLICATION_JSON));
+                    }
+                }
+                if (!closed && terminated) {
+                    send(SseEmitter.event().name("solverStatus").data(SolverStatus.STOPPED));
+                    closed = true;
+                    sseEmitter.complete();
+                }
+            } catch (IOException | IllegalStateException e) {
+                logger.debug("Closing the best solution stream after a failed send.", e);
+                close();
+                sseEmitter.completeWithError(e);
+            } finally {
+                sending.set(false);
+            }
+            // A best solution might have been offered after the last getAndSet(null) but before sending.set(false)
+        } while (!closed && (pendingBestSolution.get() != null || terminated) && sending.compareAndSet(false, true));
+    }
+
+    private void send(SseEmitter.SseEventBuilder event) throws IOException {
+        ScheduledFuture<?> sendTimeout = timeoutExecutor.schedule(this::sendTimedOut,
+                sendTimeoutMillis, TimeUnit.MILLISECONDS);
+        try {
+            sseEmitter.send(event);
+        } finally {
+            sendTimeout.cancel(false);
+        }
+    }
+
+    /**
+     * The blocked send cannot be interrupted, but the stream is completed as soon as it returns or fails.
+     */
+    private void sendTimedOut() {
+        if (closed) {
+            return;
+        }
+        logger.debug("Closing the best solution stream after a send that took over {} ms.", sendTimeoutMillis);
+        close();
+        // Waits for the blocked send to release the emitter, on a sender thread instead of the timeout thread
+        senderExecutor.execute(() -> sseEmitter.completeWithError(new IOException(
+                "The client did not take a best solution event within " + sendTimeoutMillis + " ms.")));
+    }
+}
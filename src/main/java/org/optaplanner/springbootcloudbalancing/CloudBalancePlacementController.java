@@ -0,0 +1,96 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.optaplanner.springbootcloudbalancing;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.optaplanner.springbootcloudbalancing.domain.CloudBalance;
+import org.optaplanner.springbootcloudbalancing.domain.CloudComputer;
+import org.optaplanner.springbootcloudbalancing.domain.CloudProcess;
+import org.optaplanner.springbootcloudbalancing.solver.BestSolutionSnapshot;
+import org.optaplanner.springbootcloudbalancing.solver.SolverManager;
+import org.optaplanner.springbootcloudbalancing.solver.greedy.CloudBalanceGreedyPlacer;
+import org.optaplanner.springbootcloudbalancing.solver.greedy.CloudComputerCapacityIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Answers right away where processes should go, with a greedy placement instead of a solver,
+ * on the request thread and without queueing.
+ */
+@RestController
+@RequestMapping("placements")
+public class CloudBalancePlacementController {
+
+    @Autowired
+    private SolverManager<CloudBalance> solverManager;
+
+    private final CloudBalanceGreedyPlacer greedyPlacer = new CloudBalanceGreedyPlacer();
+    // Built once per best solution of a solving tenant and then only queried,
+    // forgotten with the best solution it was built from
+    private final Map<BestSolutionSnapshot<CloudBalance>, CloudComputerCapacityIndex> snapshotToCapacityIndexMap
+            = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Assigns the unassigned processes, the assigned ones stay where they are.
+     * @return the same problem, a process that fits on no computer stays unassigned and makes the score uninitialized
+     */
+    @PostMapping
+    public CloudBalance place(@RequestBody CloudBalance cloudBalance) {
+        cloudBalance.resolveComputerReferences();
+        greedyPlacer.place(cloudBalance);
+        return cloudBalance;
+    }
+
+    /**
+     * Finds a computer for one new process in the current best solution of a tenant, without adding it.
+     * @return the computer, or 204 No Content if the process fits on no computer
+     */
+    @PostMapping("{tenantId}")
+    public ResponseEntity<CloudComputer> placeProcess(@PathVariable Comparable<?> tenantId,
+            @RequestBody CloudProcess process) {
+        BestSolutionSnapshot<CloudBalance> bestSolutionSnapshot = solverManager.getBestSolutionSnapshot(tenantId);
+        CloudComputerCapacityIndex capacityIndex;
+        if (bestSolutionSnapshot.isStored()) {
+            // Decoded per request anyway, so a stopped tenant keeps nothing on the heap
+            capacityIndex = buildCapacityIndex(bestSolutionSnapshot);
+        } else {
+            capacityIndex = snapshotToCapacityIndexMap.get(bestSolutionSnapshot);
+            if (capacityIndex == null) {
+                // Built outside the lock, two requests might both build it, but then they build the same
+                capacityIndex = buildCapacityIndex(bestSolutionSnapshot);
+                snapshotToCapacityIndexMap.put(bestSolutionSnapshot, capacityIndex);
+            }
+        }
+        CloudComputer computer = capacityIndex.findComputer(process);
+        return computer == null ? ResponseEntity.noContent().build() : ResponseEntity.ok(computer);
+    }
+
+    private static CloudComputerCapacityIndex buildCapacityIndex(
+            BestSolutionSnapshot<CloudBalance> bestSolutionSnapshot) {
+        CloudBalance bestSolution = bestSolutionSnapshot.getSolution();
+        return new CloudComputerCapacityIndex(bestSolution.getComputerList(), bestSolution.getProcessList());
+    }
+}
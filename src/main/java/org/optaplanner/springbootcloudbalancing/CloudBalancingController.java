@@ -16,17 +16,52 @@
 
 package org.optaplanner.springbootcloudbalancing;
 
-import org.optaplanner.core.api.score.Score;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.optaplanner.core.api.score.buildin.hardsoft.HardSoftScore;
 import org.optaplanner.springbootcloudbalancing.domain.CloudBalance;
+import org.optaplanner.springbootcloudbalancing.domain.CloudBalanceChanges;
+import org.optaplanner.springbootcloudbalancing.persistence.CloudBalanceBatchReader;
+import org.optaplanner.springbootcloudbalancing.persistence.CloudBalanceNdjsonReader;
+import org.optaplanner.springbootcloudbalancing.solver.BestSolutionSnapshot;
 import org.optaplanner.springbootcloudbalancing.solver.SolverManager;
+import org.optaplanner.springbootcloudbalancing.solver.SolverOptions;
+import org.optaplanner.springbootcloudbalancing.solver.SolverQueuePosition;
 import org.optaplanner.springbootcloudbalancing.solver.SolverStatus;
+import org.optaplanner.springbootcloudbalancing.solver.SolverSubmissionResult;
+import org.optaplanner.springbootcloudbalancing.solver.realtime.CloudBalanceProblemFactChange;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @RequestMapping("solvers")
@@ -34,24 +69,249 @@ public class CloudBalancingController {
 
     @Autowired
     private SolverManager<CloudBalance> solverManager;
+    @Autowired
+    private CloudBalanceNdjsonReader cloudBalanceNdjsonReader;
+    @Autowired
+    private CloudBalanceBatchReader cloudBalanceBatchReader;
+
+    @Value("${solver.events.sender-thread-count:4}")
+    private int eventSenderThreadCount;
+    @Value("${solver.events.send-timeout-millis:10000}")
+    private long eventSendTimeoutMillis;
+    @Value("${solver.await.max-timeout-millis:600000}")
+    private long maxAwaitTimeoutMillis;
+
+    private ExecutorService eventSenderExecutorService;
+    private ScheduledExecutorService eventSendTimeoutExecutorService;
+
+    @PostConstruct
+    private void init() {
+        // Never queues, so a send that blocks on a slow client never delays the events of the other clients.
+        // A stream uses at most one sender thread at a time and a stalled one is closed after the send timeout.
+        eventSenderExecutorService = new ThreadPoolExecutor(eventSenderThreadCount, Integer.MAX_VALUE,
+                60L, TimeUnit.SECONDS, new SynchronousQueue<>());
+        eventSendTimeoutExecutorService = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        eventSendTimeoutExecutorService.shutdownNow();
+        eventSenderExecutorService.shutdownNow();
+    }
 
+    /**
+     * @param cloudBalance in the default JSON or, with its Content-Type, in a compact representation
+     * of {@link CompactMediaTypeConfiguration}
+     * @param solverOptions bound from the query parameters, for example {@code ?priority=1&solverMode=PARTITIONED_SEARCH}
+     * or {@code ?millisecondsSpentLimit=60000&bestScoreLimit=0hard/-2500soft}
+     */
     @PostMapping("{tenantId}")
-    public void solve(@PathVariable Comparable<?> tenantId, @RequestBody CloudBalance cloudBalance) {
-        solverManager.solve(tenantId, cloudBalance);
+    public void solve(@PathVariable Comparable<?> tenantId, @RequestBody CloudBalance cloudBalance,
+            SolverOptions solverOptions) {
+        cloudBalance.resolveComputerReferences();
+        solverManager.solve(tenantId, cloudBalance, solverOptions);
+    }
+
+    /**
+     * Reads a problem in the newline delimited JSON of {@link CloudBalanceNdjsonReader} straight from the request,
+     * as it streams in, and starts solving it as soon as it has been read.
+     * @param solverOptions bound from the query parameters, as for a JSON problem
+     */
+    @PostMapping(path = "{tenantId}", consumes = CloudBalanceNdjsonReader.NDJSON_VALUE)
+    public void solveStream(@PathVariable Comparable<?> tenantId, InputStream problemStream,
+            SolverOptions solverOptions) throws IOException {
+        solverManager.solve(tenantId, cloudBalanceNdjsonReader.read(problemStream), solverOptions);
+    }
+
+    /**
+     * Submits many tenants in one request, read with {@link CloudBalanceBatchReader} as it streams in.
+     * Answers 400 Bad Request without submitting any tenant if the batch is not valid.
+     * @return a result per tenant, in the order of the batch, because some tenants can be refused while others are not
+     */
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<SolverSubmissionResult> solveBatch(InputStream batchStream) throws IOException {
+        return solverManager.solveBatch(cloudBalanceBatchReader.read(batchStream));
+    }
+
+    /**
+     * Solves a stopped tenant again, starting from its current best solution.
+     * @param cloudBalance null to continue from the current best solution as is,
+     * otherwise the unassigned processes of this problem get the computer they have in the current best solution
+     */
+    @PostMapping("{tenantId}/replan")
+    public void replan(@PathVariable Comparable<?> tenantId,
+            @RequestBody(required = false) CloudBalance cloudBalance, SolverOptions solverOptions) {
+        if (cloudBalance != null) {
+            cloudBalance.resolveComputerReferences();
+            cloudBalance.copyAssignmentsFrom(solverManager.getBestSolution(tenantId));
+        }
+        solverManager.replan(tenantId, cloudBalance, solverOptions);
+    }
+
+    /**
+     * Adds and removes computers and processes of a tenant that is still solving, without losing its progress.
+     * Answers 409 Conflict if the solver has stopped already.
+     */
+    @PostMapping("{tenantId}/problemFactChanges")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public void addProblemFactChanges(@PathVariable Comparable<?> tenantId,
+            @RequestBody CloudBalanceProblemFactChange problemFactChange) {
+        if (!problemFactChange.isEmpty()) {
+            solverManager.addProblemFactChanges(tenantId, Collections.singletonList(problemFactChange));
+        }
     }
 
-    @GetMapping("{tenantId}/bestSolution")
-    public CloudBalance bestSolution(@PathVariable Comparable<?> tenantId) {
-        return solverManager.getBestSolution(tenantId);
+    /**
+     * Answers 304 Not Modified if the If-None-Match header holds the ETag of the current best solution.
+     */
+    @GetMapping(path = "{tenantId}/bestSolution", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Resource> bestSolution(@PathVariable Comparable<?> tenantId) {
+        return toBestSolutionResponse(solverManager.getBestSolutionSnapshot(tenantId));
     }
 
-    @GetMapping("{tenantId}/bestScore")
-    public Score bestScore(@PathVariable Comparable<?> tenantId) {
-        return solverManager.getBestScore(tenantId);
+    /**
+     * The best solution in the compact representation, in which processes reference their computer by id.
+     * That is how the result of a stopped tenant is stored, so it is served as is.
+     * Every representation of the same best solution has its own ETag,
+     * so a cache never takes a 304 Not Modified for one representation as valid for another.
+     */
+    @GetMapping(path = "{tenantId}/bestSolution", produces = CompactMediaTypeConfiguration.COMPACT_JSON_VALUE)
+    public ResponseEntity<Object> compactJsonBestSolution(@PathVariable Comparable<?> tenantId) {
+        BestSolutionSnapshot<CloudBalance> bestSolutionSnapshot = solverManager.getBestSolutionSnapshot(tenantId);
+        ByteBuffer compactSolution = bestSolutionSnapshot.getCompactSolutionBuffer();
+        return toCompactBestSolutionResponse(bestSolutionSnapshot, "compact-json", compactSolution == null
+                ? bestSolutionSnapshot.getSolution() : new ByteBufferResource(compactSolution));
+    }
+
+    /**
+     * Like {@link #compactJsonBestSolution(Comparable)}, but in binary Smile.
+     */
+    @GetMapping(path = "{tenantId}/bestSolution", produces = CompactMediaTypeConfiguration.COMPACT_SMILE_VALUE)
+    public ResponseEntity<Object> compactSmileBestSolution(@PathVariable Comparable<?> tenantId) {
+        BestSolutionSnapshot<CloudBalance> bestSolutionSnapshot = solverManager.getBestSolutionSnapshot(tenantId);
+        return toCompactBestSolutionResponse(bestSolutionSnapshot, "compact-smile",
+                bestSolutionSnapshot.getSolution());
+    }
+
+    private static ResponseEntity<Object> toCompactBestSolutionResponse(
+            BestSolutionSnapshot<CloudBalance> bestSolutionSnapshot, String representation, Object body) {
+        return ResponseEntity.ok().eTag(bestSolutionSnapshot.getETag(representation)).varyBy(HttpHeaders.ACCEPT)
+                .body(body);
+    }
+
+    /**
+     * Answers with the best solution once the solver stops, the scoreTarget is reached or the timeout expires,
+     * whichever comes first, so the client does not poll the solverStatus.
+     * No request thread waits meanwhile, the request is suspended until the best solution is there.
+     * @param scoreTarget null to wait until the solver stops, for example {@code 0hard/-2500soft}
+     * @param timeoutMillis at most solver.await.max-timeout-millis, then answers with the current best solution
+     */
+    @GetMapping(path = "{tenantId}/bestSolution/await", produces = MediaType.APPLICATION_JSON_VALUE)
+    public DeferredResult<ResponseEntity<Resource>> awaitBestSolution(@PathVariable Comparable<?> tenantId,
+            @RequestParam(required = false) HardSoftScore scoreTarget,
+            @RequestParam(defaultValue = "30000") long timeoutMillis) {
+        CompletableFuture<BestSolutionSnapshot<CloudBalance>> bestSolutionFuture = solverManager
+                .getBestSolutionFuture(tenantId, scoreTarget).toCompletableFuture();
+        DeferredResult<ResponseEntity<Resource>> deferredResult = new DeferredResult<>(
+                Math.max(1L, Math.min(timeoutMillis, maxAwaitTimeoutMillis)));
+        deferredResult.onTimeout(() -> {
+            try {
+                deferredResult.setResult(toBestSolutionResponse(solverManager.getBestSolutionSnapshot(tenantId)));
+            } catch (RuntimeException e) {
+                // For example, the tenant was removed meanwhile
+                deferredResult.setErrorResult(e);
+            }
+        });
+        // Also after a timeout or a disconnect, to stop listening to the best solutions of the tenant
+        deferredResult.onCompletion(() -> bestSolutionFuture.cancel(false));
+        bestSolutionFuture.thenAccept(bestSolutionSnapshot
+                -> deferredResult.setResult(toBestSolutionResponse(bestSolutionSnapshot)));
+        return deferredResult;
+    }
+
+    private static ResponseEntity<Resource> toBestSolutionResponse(
+            BestSolutionSnapshot<CloudBalance> bestSolutionSnapshot) {
+        // Streamed from the result store without a copy on the heap if the tenant has stopped
+        return ResponseEntity.ok().eTag(bestSolutionSnapshot.getETag()).varyBy(HttpHeaders.ACCEPT)
+                .body(new ByteBufferResource(bestSolutionSnapshot.getSolutionJsonBuffer()));
+    }
+
+    /**
+     * @param since the version of a best solution the client already has, which is the ETag without the quotes
+     * after the dot, or the id of an event
+     * @return the process assignments that changed since that version,
+     * or the full best solution if that version is no longer remembered or the problem changed since
+     */
+    @GetMapping("{tenantId}/bestSolution/changes")
+    public ResponseEntity<CloudBalanceChanges> bestSolutionChanges(@PathVariable Comparable<?> tenantId,
+            @RequestParam long since) {
+        BestSolutionSnapshot<CloudBalance> bestSolutionSnapshot = solverManager.getBestSolutionSnapshot(tenantId);
+        long version = bestSolutionSnapshot.getVersion();
+        CloudBalanceChanges changes;
+        if (since == version) {
+            changes = CloudBalanceChanges.unchanged(version, (HardSoftScore) bestSolutionSnapshot.getScore());
+        } else {
+            // Null if the version is newer than the current one too
+            BestSolutionSnapshot<CloudBalance> baseSnapshot = since < version
+                    ? solverManager.getBestSolutionSnapshot(tenantId, since) : null;
+            changes = baseSnapshot == null
+                    ? CloudBalanceChanges.fullSolution(since, version, bestSolutionSnapshot.getSolution())
+                    : CloudBalanceChanges.between(since, baseSnapshot.getAssignments(),
+                            version, bestSolutionSnapshot.getSolution());
+        }
+        return ResponseEntity.ok().eTag(bestSolutionSnapshot.getETag()).body(changes);
+    }
+
+    /**
+     * Has the same ETag as the best solution with this score.
+     */
+    @GetMapping(path = "{tenantId}/bestScore", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Resource> bestScore(@PathVariable Comparable<?> tenantId) {
+        BestSolutionSnapshot<CloudBalance> bestSolutionSnapshot = solverManager.getBestSolutionSnapshot(tenantId);
+        return ResponseEntity.ok().eTag(bestSolutionSnapshot.getETag())
+                .body(new ByteBufferResource(bestSolutionSnapshot.getScoreJsonBuffer()));
     }
 
     @GetMapping("{tenantId}/solverStatus")
     public SolverStatus solverStatus(@PathVariable Comparable<?> tenantId) {
         return solverManager.getSolverStatus(tenantId);
     }
+
+    /**
+     * Streams a bestScore event (and a bestSolution event if includeSolution is true) for every new best solution,
+     * and a final solverStatus event when the solver stops.
+     */
+    @GetMapping(path = "{tenantId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter events(@PathVariable Comparable<?> tenantId,
+            @RequestParam(defaultValue = "false") boolean includeSolution) {
+        SseEmitter sseEmitter = new SseEmitter(0L);
+        BestSolutionEmitter bestSolutionEmitter = new BestSolutionEmitter(sseEmitter, includeSolution,
+                eventSenderExecutorService, eventSendTimeoutExecutorService, eventSendTimeoutMillis);
+        CompletableFuture<BestSolutionSnapshot<CloudBalance>> terminationFuture = solverManager
+                .getTerminationFuture(tenantId).toCompletableFuture();
+        solverManager.addBestSolutionListener(tenantId, bestSolutionEmitter);
+        Runnable unsubscribe = () -> {
+            bestSolutionEmitter.close();
+            solverManager.removeBestSolutionListener(tenantId, bestSolutionEmitter);
+            terminationFuture.cancel(false);
+        };
+        sseEmitter.onCompletion(unsubscribe);
+        sseEmitter.onTimeout(unsubscribe);
+        BestSolutionSnapshot<CloudBalance> bestSolutionSnapshot = solverManager.getBestSolutionSnapshot(tenantId);
+        if (bestSolutionSnapshot.getScore() != null) {
+            bestSolutionEmitter.accept(bestSolutionSnapshot);
+        }
+        terminationFuture.whenComplete((bestSolution, throwable) -> bestSolutionEmitter.solverTerminated());
+        return sseEmitter;
+    }
+
+    @GetMapping("{tenantId}/queuePosition")
+    public SolverQueuePosition queuePosition(@PathVariable Comparable<?> tenantId) {
+        return solverManager.getQueuePosition(tenantId);
+    }
+
+    @DeleteMapping("{tenantId}")
+    public void removeTenant(@PathVariable Comparable<?> tenantId) {
+        solverManager.removeTenant(tenantId);
+    }
 }
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.optaplanner.springbootcloudbalancing;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.optaplanner.springbootcloudbalancing.domain.CompactCloudBalanceModule;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Offers the {@link CompactCloudBalanceModule compact representation} as JSON and as binary Smile,
+ * negotiated with the Content-Type and Accept headers.
+ */
+@Configuration
+public class CompactMediaTypeConfiguration implements WebMvcConfigurer {
+
+    public static final String COMPACT_JSON_VALUE = "application/vnd.cloudbalance.compact+json";
+    public static final MediaType COMPACT_JSON = MediaType.valueOf(COMPACT_JSON_VALUE);
+    public static final String COMPACT_SMILE_VALUE = "application/vnd.cloudbalance.compact+smile";
+    public static final MediaType COMPACT_SMILE = MediaType.valueOf(COMPACT_SMILE_VALUE);
+
+    @Autowired
+    private Jackson2ObjectMapperBuilder objectMapperBuilder;
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // Last, so a client that accepts anything still gets the default JSON
+        MappingJackson2HttpMessageConverter compactJsonConverter = new MappingJackson2HttpMessageConverter(
+                objectMapperBuilder.build().registerModule(new CompactCloudBalanceModule()));
+        compactJsonConverter.setSupportedMediaTypes(Collections.singletonList(COMPACT_JSON));
+        converters.add(compactJsonConverter);
+        // The builder has the Spring Boot configuration and is not shared, so it can be switched to Smile
+        MappingJackson2SmileHttpMessageConverter compactSmileConverter = new MappingJackson2SmileHttpMessageConverter(
+                objectMapperBuilder.factory(new SmileFactory()).build().registerModule(new CompactCloudBalanceModule()));
+        compactSmileConverter.setSupportedMediaTypes(Collections.singletonList(COMPACT_SMILE));
+        // Binary, so it has no charset
+        compactSmileConverter.setDefaultCharset(null);
+        converters.add(compactSmileConverter);
+    }
+}
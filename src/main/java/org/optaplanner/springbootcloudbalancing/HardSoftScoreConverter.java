@@ -0,0 +1,34 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.optaplanner.springbootcloudbalancing;
+
+import org.optaplanner.core.api.score.buildin.hardsoft.HardSoftScore;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.stereotype.Component;
+
+/**
+ * Binds request parameters such as {@code scoreTarget=0hard/-2500soft}, an unparsable score answers 400 Bad Request.
+ */
+@Component
+public class HardSoftScoreConverter implements Converter<String, HardSoftScore> {
+
+    @Override
+    public HardSoftScore convert(String scoreString) {
+        return HardSoftScore.parseScore(scoreString);
+    }
+}
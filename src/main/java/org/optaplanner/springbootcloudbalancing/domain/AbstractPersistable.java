@@ -22,7 +22,7 @@ import org.optaplanner.core.api.domain.lookup.PlanningId;
 
 public abstract class AbstractPersistable implements Serializable {
 
-    protected Long id;
+    protected long id;
 
     protected AbstractPersistable() {
     }
@@ -32,11 +32,11 @@ public abstract class AbstractPersistable implements Serializable {
     }
 
     @PlanningId
-    public Long getId() {
+    public long getId() {
         return id;
     }
 
-    public void setId(Long id) {
+    public void setId(long id) {
         this.id = id;
     }
 
@@ -16,7 +16,9 @@
 
 package org.optaplanner.springbootcloudbalancing.domain;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.optaplanner.core.api.domain.solution.PlanningEntityCollectionProperty;
 import org.optaplanner.core.api.domain.solution.PlanningScore;
@@ -39,8 +41,8 @@ public class CloudBalance extends AbstractPersistable {
 
     public CloudBalance(long id, List<CloudComputer> computerList, List<CloudProcess> processList) {
         super(id);
-        this.computerList = computerList;
-        this.processList = processList;
+        setComputerList(computerList);
+        setProcessList(processList);
     }
 
     @ValueRangeProvider(id = "computerRange")
@@ -51,6 +53,7 @@ public class CloudBalance extends AbstractPersistable {
 
     public void setComputerList(List<CloudComputer> computerList) {
         this.computerList = computerList;
+        indexComputers();
     }
 
     @PlanningEntityCollectionProperty
@@ -60,6 +63,7 @@ public class CloudBalance extends AbstractPersistable {
 
     public void setProcessList(List<CloudProcess> processList) {
         this.processList = processList;
+        indexProcesses();
     }
 
     @PlanningScore
@@ -74,4 +78,95 @@ public class CloudBalance extends AbstractPersistable {
     // ************************************************************************
     // Complex methods
     // ************************************************************************
+
+    /**
+     * Gives every computer without an {@link CloudComputer#getIndex() index} the next free index,
+     * so the computers of a new solution are indexed densely from 0
+     * and a computer added later never takes the index of another computer in the list, even after a removal.
+     * A computer that has an index keeps it, because the clones of this solution share it.
+     */
+    public void indexComputers() {
+        if (computerList == null) {
+            return;
+        }
+        int nextIndex = 0;
+        for (CloudComputer computer : computerList) {
+            nextIndex = Math.max(nextIndex, computer.getIndex() + 1);
+        }
+        for (CloudComputer computer : computerList) {
+            if (computer.getIndex() < 0) {
+                computer.setIndex(nextIndex++);
+            }
+        }
+    }
+
+    /**
+     * Like {@link #indexComputers()}, but for the processes.
+     */
+    public void indexProcesses() {
+        if (processList == null) {
+            return;
+        }
+        int nextIndex = 0;
+        for (CloudProcess process : processList) {
+            nextIndex = Math.max(nextIndex, process.getIndex() + 1);
+        }
+        for (CloudProcess process : processList) {
+            if (process.getIndex() < 0) {
+                process.setIndex(nextIndex++);
+            }
+        }
+    }
+
+    /**
+     * Replaces the computer of every assigned process by the computer with the same id in {@link #computerList},
+     * because a deserialized process references its own copy of its computer (or a computer with only an id).
+     * @throws IllegalArgumentException if a process references a computer that is not in the computerList
+     */
+    public void resolveComputerReferences() {
+        Map<Long, CloudComputer> computerIdToComputerMap = createComputerIdToComputerMap();
+        for (CloudProcess process : processList) {
+            CloudComputer computer = process.getComputer();
+            if (computer != null) {
+                CloudComputer resolvedComputer = computerIdToComputerMap.get(computer.getId());
+                if (resolvedComputer == null) {
+                    throw new IllegalArgumentException("The process (" + process + ") has a computer (" + computer
+                            + ") that is not in the computerList.");
+                }
+                process.setComputer(resolvedComputer);
+            }
+        }
+    }
+
+    /**
+     * Assigns every unassigned process to the computer that the process with the same id has in the other solution,
+     * if this solution has a computer with that id too.
+     * Then the solver only needs to assign the new processes and can improve on the other solution.
+     * @param otherSolution never null, not modified
+     */
+    public void copyAssignmentsFrom(CloudBalance otherSolution) {
+        Map<Long, Long> processIdToComputerIdMap = new HashMap<>(otherSolution.getProcessList().size() * 2);
+        for (CloudProcess otherProcess : otherSolution.getProcessList()) {
+            if (otherProcess.getComputer() != null) {
+                processIdToComputerIdMap.put(otherProcess.getId(), otherProcess.getComputer().getId());
+            }
+        }
+        Map<Long, CloudComputer> computerIdToComputerMap = createComputerIdToComputerMap();
+        for (CloudProcess process : processList) {
+            if (process.getComputer() == null) {
+                Long computerId = processIdToComputerIdMap.get(process.getId());
+                if (computerId != null) {
+                    process.setComputer(computerIdToComputerMap.get(computerId));
+                }
+            }
+        }
+    }
+
+    private Map<Long, CloudComputer> createComputerIdToComputerMap() {
+        Map<Long, CloudComputer> computerIdToComputerMap = new HashMap<>(computerList.size() * 2);
+        for (CloudComputer computer : computerList) {
+            computerIdToComputerMap.put(computer.getId(), computer);
+        }
+        return computerIdToComputerMap;
+    }
 }
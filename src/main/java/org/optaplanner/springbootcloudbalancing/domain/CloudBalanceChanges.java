@@ -0,0 +1,127 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.optaplanner.springbootcloudbalancing.domain;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.optaplanner.core.api.score.buildin.hardsoft.HardSoftScore;
+
+/**
+ * The process assignments that changed between an older version of a best solution and the current one,
+ * for the same computers and processes.
+ * <p>
+ * If the older version is no longer known, or the computers or processes changed since, it holds the full current
+ * solution instead.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CloudBalanceChanges {
+
+    private static final int UNASSIGNED = -1;
+
+    private final long baseVersion;
+    private final long version;
+    private final HardSoftScore score;
+    private final List<ProcessAssignment> changedAssignmentList;
+    private final CloudBalance solution;
+
+    private CloudBalanceChanges(long baseVersion, long version, HardSoftScore score,
+            List<ProcessAssignment> changedAssignmentList, CloudBalance solution) {
+        this.baseVersion = baseVersion;
+        this.version = version;
+        this.score = score;
+        this.changedAssignmentList = changedAssignmentList;
+        this.solution = solution;
+    }
+
+    /**
+     * @param baseAssignments returned by {@link #toAssignments(CloudBalance)} for the older version
+     * @param solution never null, has the same computers and processes as the older version
+     * @throws IllegalArgumentException if the solution has a different number of processes
+     */
+    public static CloudBalanceChanges between(long baseVersion, int[] baseAssignments,
+            long version, CloudBalance solution) {
+        List<CloudProcess> processList = solution.getProcessList();
+        if (baseAssignments.length != processList.size()) {
+            throw new IllegalArgumentException("The baseAssignments length (" + baseAssignments.length
+                    + ") differs from the processList size (" + processList.size() + ").");
+        }
+        List<ProcessAssignment> changedAssignmentList = new ArrayList<>();
+        // The solver keeps the order of the processes, so there is no need to match them by id
+        for (int i = 0; i < processList.size(); i++) {
+            CloudProcess process = processList.get(i);
+            CloudComputer computer = process.getComputer();
+            if (baseAssignments[i] != (computer == null ? UNASSIGNED : computer.getIndex())) {
+                changedAssignmentList.add(new ProcessAssignment(process.getId(),
+                        computer == null ? null : computer.getId()));
+            }
+        }
+        return new CloudBalanceChanges(baseVersion, version, solution.getScore(), changedAssignmentList, null);
+    }
+
+    public static CloudBalanceChanges unchanged(long version, HardSoftScore score) {
+        return new CloudBalanceChanges(version, version, score, Collections.emptyList(), null);
+    }
+
+    public static CloudBalanceChanges fullSolution(long baseVersion, long version, CloudBalance solution) {
+        return new CloudBalanceChanges(baseVersion, version, solution.getScore(), null, solution);
+    }
+
+    /**
+     * Remembers an older version of a solution in 4 bytes per process, instead of a clone of the solution.
+     * @param solution never null, not modified
+     * @return the {@link CloudComputer#getIndex() index} of the computer of every process, in the order of the
+     * processList, or -1 if it is unassigned
+     */
+    public static int[] toAssignments(CloudBalance solution) {
+        List<CloudProcess> processList = solution.getProcessList();
+        int[] assignments = new int[processList.size()];
+        for (int i = 0; i < assignments.length; i++) {
+            CloudComputer computer = processList.get(i).getComputer();
+            assignments[i] = computer == null ? UNASSIGNED : computer.getIndex();
+        }
+        return assignments;
+    }
+
+    public long getBaseVersion() {
+        return baseVersion;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public HardSoftScore getScore() {
+        return score;
+    }
+
+    /**
+     * @return null if {@link #getSolution()} is not null
+     */
+    public List<ProcessAssignment> getChangedAssignmentList() {
+        return changedAssignmentList;
+    }
+
+    /**
+     * @return null unless the base version is no longer known or the computers or processes changed since
+     */
+    public CloudBalance getSolution() {
+        return solution;
+    }
+}
@@ -16,6 +16,10 @@
 
 package org.optaplanner.springbootcloudbalancing.domain;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 public class CloudComputer extends AbstractPersistable {
 
     private int cpuPower; // in gigahertz
@@ -23,15 +27,28 @@ public class CloudComputer extends AbstractPersistable {
     private int networkBandwidth; // in gigabyte per hour
     private int cost; // in euro per month
 
+    private int multiplicand;
+    private int index = -1;
+
     public CloudComputer() {
     }
 
+    /**
+     * Used when a computer is read from JSON, so a computer without an id is refused,
+     * instead of getting the id 0 of another computer.
+     */
+    @JsonCreator
+    private CloudComputer(@JsonProperty(value = "id", required = true) long id) {
+        super(id);
+    }
+
     public CloudComputer(long id, int cpuPower, int memory, int networkBandwidth, int cost) {
         super(id);
         this.cpuPower = cpuPower;
         this.memory = memory;
         this.networkBandwidth = networkBandwidth;
         this.cost = cost;
+        updateMultiplicand();
     }
 
     public int getCpuPower() {
@@ -40,6 +57,7 @@ public class CloudComputer extends AbstractPersistable {
 
     public void setCpuPower(int cpuPower) {
         this.cpuPower = cpuPower;
+        updateMultiplicand();
     }
 
     public int getMemory() {
@@ -48,6 +66,7 @@ public class CloudComputer extends AbstractPersistable {
 
     public void setMemory(int memory) {
         this.memory = memory;
+        updateMultiplicand();
     }
 
     public int getNetworkBandwidth() {
@@ -56,6 +75,7 @@ public class CloudComputer extends AbstractPersistable {
 
     public void setNetworkBandwidth(int networkBandwidth) {
         this.networkBandwidth = networkBandwidth;
+        updateMultiplicand();
     }
 
     public int getCost() {
@@ -71,6 +91,24 @@ public class CloudComputer extends AbstractPersistable {
     // ************************************************************************
 
     public int getMultiplicand() {
-        return cpuPower * memory * networkBandwidth;
+        return multiplicand;
+    }
+
+    private void updateMultiplicand() {
+        multiplicand = cpuPower * memory * networkBandwidth;
+    }
+
+    /**
+     * @return the position of this computer in the computerList of its {@link CloudBalance} when it was indexed,
+     * so score and move code can keep per computer state in arrays, or -1 if it is not indexed yet
+     * @see CloudBalance#indexComputers()
+     */
+    @JsonIgnore
+    public int getIndex() {
+        return index;
+    }
+
+    void setIndex(int index) {
+        this.index = index;
     }
 }
@@ -16,6 +16,9 @@
 
 package org.optaplanner.springbootcloudbalancing.domain;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import org.optaplanner.core.api.domain.entity.PlanningEntity;
 import org.optaplanner.core.api.domain.variable.PlanningVariable;
 
@@ -26,12 +29,23 @@ public class CloudProcess extends AbstractPersistable {
     private int requiredMemory; // in gigabyte RAM
     private int requiredNetworkBandwidth; // in gigabyte per hour
 
+    private int index = -1;
+
     // Planning variables: changes during planning, between score calculations.
     private CloudComputer computer;
 
     public CloudProcess() {
     }
 
+    /**
+     * Used when a process is read from JSON, so a process without an id is refused,
+     * instead of getting the id 0 of another process.
+     */
+    @JsonCreator
+    private CloudProcess(@JsonProperty(value = "id", required = true) long id) {
+        super(id);
+    }
+
     public CloudProcess(long id, int requiredCpuPower, int requiredMemory, int requiredNetworkBandwidth) {
         super(id);
         this.requiredCpuPower = requiredCpuPower;
@@ -80,6 +94,20 @@ public class CloudProcess extends AbstractPersistable {
         return requiredCpuPower * requiredMemory * requiredNetworkBandwidth;
     }
 
+    /**
+     * @return the position of this process in the processList of its {@link CloudBalance} when it was indexed,
+     * or -1 if it is not indexed yet
+     * @see CloudBalance#indexProcesses()
+     */
+    @JsonIgnore
+    public int getIndex() {
+        return index;
+    }
+
+    void setIndex(int index) {
+        this.index = index;
+    }
+
     public String getLabel() {
         return "Process " + id;
     }
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.optaplanner.springbootcloudbalancing.domain;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.annotation.JsonIdentityInfo;
+import com.fasterxml.jackson.annotation.JsonIdentityReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.ObjectIdGenerators;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import org.optaplanner.core.api.score.buildin.hardsoft.HardSoftScore;
+
+/**
+ * The compact representation of a {@link CloudBalance}: a process references its computer by id
+ * in a {@code computerId} property, instead of holding a copy of it.
+ * When it is read, every process gets the computer with that id in the computerList, so they share it.
+ * It also leaves out the derived properties and writes the score as a string, such as {@code "0hard/-300soft"}.
+ * <p>
+ * Register it only on the object mappers of the compact media types, so the default representation is unchanged.
+ */
+public class CompactCloudBalanceModule extends SimpleModule {
+
+    public CompactCloudBalanceModule() {
+        super("CompactCloudBalanceModule");
+        setMixInAnnotation(CloudComputer.class, CloudComputerMixIn.class);
+        setMixInAnnotation(CloudProcess.class, CloudProcessMixIn.class);
+        addSerializer(HardSoftScore.class, ToStringSerializer.instance);
+        addDeserializer(HardSoftScore.class, new HardSoftScoreDeserializer());
+    }
+
+    @JsonIdentityInfo(generator = ObjectIdGenerators.PropertyGenerator.class, property = "id",
+            scope = CloudComputer.class)
+    private abstract static class CloudComputerMixIn {
+
+        @JsonIgnore
+        abstract int getMultiplicand();
+    }
+
+    private abstract static class CloudProcessMixIn {
+
+        @JsonProperty("computerId")
+        @JsonIdentityReference(alwaysAsId = true)
+        abstract CloudComputer getComputer();
+
+        @JsonProperty("computerId")
+        abstract void setComputer(CloudComputer computer);
+
+        @JsonIgnore
+        abstract int getRequiredMultiplicand();
+
+        @JsonIgnore
+        abstract String getLabel();
+    }
+
+    private static class HardSoftScoreDeserializer extends StdScalarDeserializer<HardSoftScore> {
+
+        private HardSoftScoreDeserializer() {
+            super(HardSoftScore.class);
+        }
+
+        @Override
+        public HardSoftScore deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            try {
+                return HardSoftScore.parseScore(parser.getValueAsString());
+            } catch (IllegalArgumentException e) {
+                return (HardSoftScore) context.handleWeirdStringValue(HardSoftScore.class, parser.getValueAsString(),
+                        e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.optaplanner.springbootcloudbalancing.domain;
+
+public class ProcessAssignment {
+
+    private final Long processId;
+    private final Long computerId;
+
+    public ProcessAssignment(Long processId, Long computerId) {
+        this.processId = processId;
+        this.computerId = computerId;
+    }
+
+    public Long getProcessId() {
+        return processId;
+    }
+
+    /**
+     * @return null if the process is unassigned
+     */
+    public Long getComputerId() {
+        return computerId;
+    }
+}
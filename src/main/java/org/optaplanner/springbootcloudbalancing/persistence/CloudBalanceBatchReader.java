@@ -0,0 +1,125 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.optaplanner.springbootcloudbalancing.persistence;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.optaplanner.springbootcloudbalancing.domain.CloudBalance;
+import org.optaplanner.springbootcloudbalancing.solver.SolverOptions;
+import org.optaplanner.springbootcloudbalancing.solver.SolverSubmission;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reads a batch of tenants from a JSON array, one element at a time as it streams in,
+ * so the request is never held as a tree. Every element has a tenantId, a problem in the default JSON
+ * and optionally solverOptions:
+ * <pre>
+ * [{"tenantId":"a","problem":{...}},
+ *  {"tenantId":"b","solverOptions":{"priority":1,"solverMode":"PARTITIONED_SEARCH"},"problem":{...}}]
+ * </pre>
+ * A tenantId is read as text, just like the tenantId in a request path.
+ */
+@Component
+public class CloudBalanceBatchReader {
+
+    private final ObjectMapper objectMapper;
+
+    public CloudBalanceBatchReader(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @param inputStream not closed
+     * @return never null, in the order of the array
+     * @throws InvalidCloudBalanceStreamException if any element is not valid, then none of them is returned
+     */
+    public List<SolverSubmission<CloudBalance>> read(InputStream inputStream) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(inputStream)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            return read(parser);
+        } catch (JsonProcessingException e) {
+            throw new InvalidCloudBalanceStreamException("The batch is not valid JSON.", e);
+        }
+    }
+
+    private List<SolverSubmission<CloudBalance>> read(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            throw new InvalidCloudBalanceStreamException("The batch is not a JSON array.",
+                    parser.getCurrentLocation());
+        }
+        List<SolverSubmission<CloudBalance>> submissionList = new ArrayList<>();
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+            submissionList.add(readSubmission(parser));
+        }
+        if (token != JsonToken.END_ARRAY) {
+            throw new InvalidCloudBalanceStreamException("A batch element is not a JSON object.",
+                    parser.getCurrentLocation());
+        }
+        if (parser.nextToken() != null) {
+            throw new InvalidCloudBalanceStreamException("The batch has content after its array.",
+                    parser.getCurrentLocation());
+        }
+        return submissionList;
+    }
+
+    private SolverSubmission<CloudBalance> readSubmission(JsonParser parser) throws IOException {
+        String tenantId = null;
+        CloudBalance problem = null;
+        SolverOptions solverOptions = new SolverOptions();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            JsonToken valueToken = parser.nextToken();
+            switch (fieldName) {
+                case "tenantId":
+                    if (valueToken != JsonToken.VALUE_STRING && valueToken != JsonToken.VALUE_NUMBER_INT) {
+                        throw new InvalidCloudBalanceStreamException("A tenantId is not a string or an integer.",
+                                parser.getCurrentLocation());
+                    }
+                    tenantId = parser.getValueAsString();
+                    break;
+                case "solverOptions":
+                    solverOptions = objectMapper.readValue(parser, SolverOptions.class);
+                    break;
+                case "problem":
+                    problem = objectMapper.readValue(parser, CloudBalance.class);
+                    try {
+                        problem.resolveComputerReferences();
+                    } catch (IllegalArgumentException e) {
+                        throw new InvalidCloudBalanceStreamException(e.getMessage(), parser.getCurrentLocation());
+                    }
+                    break;
+                default:
+                    throw new InvalidCloudBalanceStreamException("A batch element has an unknown field ("
+                            + fieldName + ").", parser.getCurrentLocation());
+            }
+        }
+        if (tenantId == null || problem == null) {
+            throw new InvalidCloudBalanceStreamException("A batch element needs a tenantId and a problem.",
+                    parser.getCurrentLocation());
+        }
+        return new SolverSubmission<>(tenantId, problem, solverOptions);
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.optaplanner.springbootcloudbalancing.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import org.optaplanner.springbootcloudbalancing.domain.AbstractPersistable;
+import org.optaplanner.springbootcloudbalancing.domain.CloudBalance;
+import org.optaplanner.springbootcloudbalancing.domain.CloudBalanceChanges;
+import org.optaplanner.springbootcloudbalancing.domain.CloudComputer;
+import org.optaplanner.springbootcloudbalancing.domain.CloudProcess;
+import org.optaplanner.springbootcloudbalancing.domain.CompactCloudBalanceModule;
+import org.springframework.stereotype.Component;
+
+/**
+ * Writes a full solution as JSON and the changes between solutions as the indexes of the reassigned processes
+ * and of their new computers, because the solver keeps the order of the computers and processes.
+ * <p>
+ * Changes after a problem fact change are written as the full solution instead.
+ * <p>
+ * A stored result is written in the {@link CompactCloudBalanceModule compact representation}.
+ */
+@Component
+public class CloudBalanceJournalCodec implements SolutionJournalCodec<CloudBalance> {
+
+    private static final byte ASSIGNMENTS = 0;
+    private static final byte FULL_SOLUTION = 1;
+    private static final int UNASSIGNED = -1;
+
+    private final ObjectMapper objectMapper;
+    // Ignores the derived properties, such as the multiplicands, that are written too
+    private final ObjectReader solutionReader;
+    private final ObjectMapper compactObjectMapper;
+    private final ObjectReader compactSolutionReader;
+
+    public CloudBalanceJournalCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        solutionReader = objectMapper.readerFor(CloudBalance.class)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        compactObjectMapper = objectMapper.copy().registerModule(new CompactCloudBalanceModule());
+        compactSolutionReader = compactObjectMapper.readerFor(CloudBalance.class)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    @Override
+    public byte[] writeSolution(CloudBalance solution) {
+        try {
+            return objectMapper.writeValueAsBytes(solution);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot serialize the solution (" + solution + ").", e);
+        }
+    }
+
+    @Override
+    public CloudBalance readSolution(byte[] bytes) {
+        CloudBalance solution;
+        try {
+            solution = solutionReader.readValue(bytes);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot deserialize a solution.", e);
+        }
+        solution.resolveComputerReferences();
+        return solution;
+    }
+
+    @Override
+    public byte[] writeChanges(CloudBalance baseSolution, CloudBalance solution) {
+        List<CloudComputer> computerList = solution.getComputerList();
+        List<CloudProcess> baseProcessList = baseSolution.getProcessList();
+        List<CloudProcess> processList = solution.getProcessList();
+        if (!haveSameIds(baseSolution.getComputerList(), computerList) || !haveSameIds(baseProcessList, processList)) {
+            byte[] solutionBytes = writeSolution(solution);
+            return ByteBuffer.allocate(1 + solutionBytes.length).put(FULL_SOLUTION).put(solutionBytes).array();
+        }
+        // Counted first, so only the changes are allocated, usually a handful, instead of room for every process
+        int changeCount = 0;
+        for (int i = 0; i < processList.size(); i++) {
+            if (!haveSameId(baseProcessList.get(i).getComputer(), processList.get(i).getComputer())) {
+                changeCount++;
+            }
+        }
+        ByteBuffer changes = ByteBuffer.allocate(1 + Integer.BYTES + changeCount * 2 * Integer.BYTES);
+        changes.put(ASSIGNMENTS).putInt(changeCount);
+        // The index of an assigned computer is only looked up for a changed process
+        for (int i = 0; i < processList.size(); i++) {
+            CloudComputer computer = processList.get(i).getComputer();
+            if (!haveSameId(baseProcessList.get(i).getComputer(), computer)) {
+                changes.putInt(i).putInt(computer == null ? UNASSIGNED : indexOf(computerList, computer));
+            }
+        }
+        return changes.array();
+    }
+
+    @Override
+    public CloudBalance applyChanges(CloudBalance baseSolution, byte[] changes) {
+        ByteBuffer buffer = ByteBuffer.wrap(changes);
+        if (buffer.get() == FULL_SOLUTION) {
+            return readSolution(Arrays.copyOfRange(changes, 1, changes.length));
+        }
+        List<CloudComputer> computerList = baseSolution.getComputerList();
+        List<CloudProcess> processList = baseSolution.getProcessList();
+        int changeCount = buffer.getInt();
+        for (int i = 0; i < changeCount; i++) {
+            CloudProcess process = processList.get(buffer.getInt());
+            int computerIndex = buffer.getInt();
+            process.setComputer(computerIndex == UNASSIGNED ? null : computerList.get(computerIndex));
+        }
+        baseSolution.setScore(null);
+        return baseSolution;
+    }
+
+    @Override
+    public int[] writeAssignments(CloudBalance solution) {
+        return CloudBalanceChanges.toAssignments(solution);
+    }
+
+    @Override
+    public byte[] writeCompactSolution(CloudBalance solution) {
+        try {
+            return compactObjectMapper.writeValueAsBytes(solution);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot serialize the solution (" + solution + ").", e);
+        }
+    }
+
+    @Override
+    public CloudBalance readCompactSolution(ByteBuffer bytes) {
+        // Streamed from the buffer, which might be mapped, instead of copied to the heap first
+        try {
+            return compactSolutionReader.readValue(new ByteBufferBackedInputStream(bytes.duplicate()));
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot deserialize a solution.", e);
+        }
+    }
+
+    private static boolean haveSameIds(List<? extends AbstractPersistable> baseList,
+            List<? extends AbstractPersistable> list) {
+        if (baseList == list) {
+            return true;
+        }
+        if (baseList.size() != list.size()) {
+            return false;
+        }
+        for (int i = 0; i < list.size(); i++) {
+            if (baseList.get(i).getId() != list.get(i).getId()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(List<CloudComputer> computerList, CloudComputer computer) {
+        // Until a computer is removed, the index of a computer is its position in the computerList
+        int index = computer.getIndex();
+        if (index >= 0 && index < computerList.size() && computerList.get(index).getId() == computer.getId()) {
+            return index;
+        }
+        for (int i = 0; i < computerList.size(); i++) {
+            if (computerList.get(i).getId() == computer.getId()) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("The computer (" + computer + ") is not in the computerList.");
+    }
+
+    private static boolean haveSameId(CloudComputer baseComputer, CloudComputer computer) {
+        return baseComputer == null ? computer == null
+                : computer != null && baseComputer.getId() == computer.getId();
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.optaplanner.springbootcloudbalancing.persistence;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.optaplanner.springbootcloudbalancing.domain.CloudBalance;
+import org.optaplanner.springbootcloudbalancing.domain.CloudComputer;
+import org.optaplanner.springbootcloudbalancing.domain.CloudProcess;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reads a {@link CloudBalance} from newline delimited JSON as it streams in, without building a tree of it first:
+ * a header line with the id and the sizes, then a line per computer and then a line per process,
+ * which references its computer by id, if it has one:
+ * <pre>
+ * {"id":7,"computerCount":2,"processCount":3}
+ * {"id":0,"cpuPower":24,"memory":96,"networkBandwidth":16,"cost":4800}
+ * {"id":1,"cpuPower":6,"memory":4,"networkBandwidth":6,"cost":660}
+ * {"id":0,"requiredCpuPower":1,"requiredMemory":1,"requiredNetworkBandwidth":1,"computerId":1}
+ * {"id":1,"requiredCpuPower":5,"requiredMemory":3,"requiredNetworkBandwidth":2}
+ * {"id":2,"requiredCpuPower":2,"requiredMemory":2,"requiredNetworkBandwidth":3}
+ * </pre>
+ * Every line is validated as soon as it is read, so an invalid stream is refused before it has been read entirely.
+ */
+@Component
+public class CloudBalanceNdjsonReader {
+
+    public static final String NDJSON_VALUE = "application/x-ndjson";
+
+    // A header cannot make the lists reserve more than this up front, the lists still grow beyond it
+    private static final int MAX_PRESIZE = 1 << 20;
+
+    private final JsonFactory jsonFactory;
+
+    public CloudBalanceNdjsonReader(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    /**
+     * @param inputStream not closed
+     * @throws InvalidCloudBalanceStreamException if the stream is not valid
+     */
+    public CloudBalance read(InputStream inputStream) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(inputStream)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            return read(parser);
+        } catch (JsonProcessingException e) {
+            throw new InvalidCloudBalanceStreamException("The problem stream is not valid JSON.", e);
+        }
+    }
+
+    private CloudBalance read(JsonParser parser) throws IOException {
+        Long id = null;
+        int computerCount = -1;
+        int processCount = -1;
+        startLine(parser, "header");
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            switch (fieldName) {
+                case "id":
+                    id = readLong(parser);
+                    break;
+                case "computerCount":
+                    computerCount = readNonNegativeInt(parser);
+                    break;
+                case "processCount":
+                    processCount = readNonNegativeInt(parser);
+                    break;
+                default:
+                    throw unknownField(parser, "header");
+            }
+        }
+        if (id == null || computerCount < 0 || processCount < 0) {
+            throw new InvalidCloudBalanceStreamException(
+                    "The header needs an id, a computerCount and a processCount.", parser.getCurrentLocation());
+        }
+
+        List<CloudComputer> computerList = new ArrayList<>(Math.min(computerCount, MAX_PRESIZE));
+        Map<Long, CloudComputer> computerIdToComputerMap = new HashMap<>(Math.min(computerCount, MAX_PRESIZE) * 2);
+        for (int i = 0; i < computerCount; i++) {
+            CloudComputer computer = readComputer(parser);
+            if (computerIdToComputerMap.put(computer.getId(), computer) != null) {
+                throw new InvalidCloudBalanceStreamException("The computer id (" + computer.getId()
+                        + ") is not unique.", parser.getCurrentLocation());
+            }
+            computerList.add(computer);
+        }
+        List<CloudProcess> processList = new ArrayList<>(Math.min(processCount, MAX_PRESIZE));
+        Set<Long> processIdSet = new HashSet<>(Math.min(processCount, MAX_PRESIZE) * 2);
+        for (int i = 0; i < processCount; i++) {
+            CloudProcess process = readProcess(parser, computerIdToComputerMap);
+            if (!processIdSet.add(process.getId())) {
+                throw new InvalidCloudBalanceStreamException("The process id (" + process.getId()
+                        + ") is not unique.", parser.getCurrentLocation());
+            }
+            processList.add(process);
+        }
+        if (parser.nextToken() != null) {
+            throw new InvalidCloudBalanceStreamException("The stream has more lines than the header announced ("
+                    + computerCount + " computers and " + processCount + " processes).",
+                    parser.getCurrentLocation());
+        }
+        return new CloudBalance(id, computerList, processList);
+    }
+
+    private static CloudComputer readComputer(JsonParser parser) throws IOException {
+        startLine(parser, "computer");
+        CloudComputer computer = new CloudComputer();
+        boolean[] present = new boolean[5];
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            switch (fieldName) {
+                case "id":
+                    computer.setId(readLong(parser));
+                    present[0] = true;
+                    break;
+                case "cpuPower":
+                    computer.setCpuPower(readNonNegativeInt(parser));
+                    present[1] = true;
+                    break;
+                case "memory":
+                    computer.setMemory(readNonNegativeInt(parser));
+                    present[2] = true;
+                    break;
+                case "networkBandwidth":
+                    computer.setNetworkBandwidth(readNonNegativeInt(parser));
+                    present[3] = true;
+                    break;
+                case "cost":
+                    computer.setCost(readNonNegativeInt(parser));
+                    present[4] = true;
+                    break;
+                default:
+                    throw unknownField(parser, "computer");
+            }
+        }
+        requireAll(parser, present, "computer", "id, cpuPower, memory, networkBandwidth and cost");
+        return computer;
+    }
+
+    private static CloudProcess readProcess(JsonParser parser, Map<Long, CloudComputer> computerIdToComputerMap)
+            throws IOException {
+        startLine(parser, "process");
+        CloudProcess process = new CloudProcess();
+        boolean[] present = new boolean[4];
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            switch (fieldName) {
+                case "id":
+                    process.setId(readLong(parser));
+                    present[0] = true;
+                    break;
+                case "requiredCpuPower":
+                    process.setRequiredCpuPower(readNonNegativeInt(parser));
+                    present[1] = true;
+                    break;
+                case "requiredMemory":
+                    process.setRequiredMemory(readNonNegativeInt(parser));
+                    present[2] = true;
+                    break;
+                case "requiredNetworkBandwidth":
+                    process.setRequiredNetworkBandwidth(readNonNegativeInt(parser));
+                    present[3] = true;
+                    break;
+                case "computerId":
+                    if (parser.currentToken() != JsonToken.VALUE_NULL) {
+                        long computerId = readLong(parser);
+                        CloudComputer computer = computerIdToComputerMap.get(computerId);
+                        if (computer == null) {
+                            throw new InvalidCloudBalanceStreamException("The process has a computerId ("
+                                    + computerId + ") that is not a computer.", parser.getCurrentLocation());
+                        }
+                        process.setComputer(computer);
+                    }
+                    break;
+                default:
+                    throw unknownField(parser, "process");
+            }
+        }
+        requireAll(parser, present, "process",
+                "id, requiredCpuPower, requiredMemory and requiredNetworkBandwidth");
+        return process;
+    }
+
+    private static void startLine(JsonParser parser, String lineType) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == null) {
+            throw new InvalidCloudBalanceStreamException("The stream ended before a " + lineType
+                    + " line, it has fewer lines than the header announced.", parser.getCurrentLocation());
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw new InvalidCloudBalanceStreamException("A " + lineType + " line is not a JSON object.",
+                    parser.getCurrentLocation());
+        }
+    }
+
+    private static long readLong(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.VALUE_NUMBER_INT) {
+            throw new InvalidCloudBalanceStreamException("The field (" + parser.getCurrentName()
+                    + ") is not an integer.", parser.getCurrentLocation());
+        }
+        return parser.getLongValue();
+    }
+
+    private static int readNonNegativeInt(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.VALUE_NUMBER_INT) {
+            throw new InvalidCloudBalanceStreamException("The field (" + parser.getCurrentName()
+                    + ") is not an integer.", parser.getCurrentLocation());
+        }
+        int value = parser.getIntValue();
+        if (value < 0) {
+            throw new InvalidCloudBalanceStreamException("The field (" + parser.getCurrentName()
+                    + ") is negative (" + value + ").", parser.getCurrentLocation());
+        }
+        return value;
+    }
+
+    private static InvalidCloudBalanceStreamException unknownField(JsonParser parser, String lineType)
+            throws IOException {
+        return new InvalidCloudBalanceStreamException("A " + lineType + " line has an unknown field ("
+                + parser.getCurrentName() + ").", parser.getCurrentLocation());
+    }
+
+    private static void requireAll(JsonParser parser, boolean[] present, String lineType, String fieldNames) {
+        for (boolean fieldPresent : present) {
+            if (!fieldPresent) {
+                throw new InvalidCloudBalanceStreamException("A " + lineType + " line needs " + fieldNames + ".",
+                        parser.getCurrentLocation());
+            }
+        }
+    }
+}
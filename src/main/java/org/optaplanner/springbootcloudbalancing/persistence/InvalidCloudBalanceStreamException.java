@@ -0,0 +1,34 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.optaplanner.springbootcloudbalancing.persistence;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidCloudBalanceStreamException extends IllegalArgumentException {
+
+    public InvalidCloudBalanceStreamException(String message, JsonLocation location) {
+        super(message + " (line " + location.getLineNr() + ", column " + location.getColumnNr() + ")");
+    }
+
+    public InvalidCloudBalanceStreamException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.optaplanner.springbootcloudbalancing.persistence;
+
+/**
+ * A tenant as far as the {@link SolverJournal} knows it.
+ * @param <Solution_> the solution type, the class with the {@link org.optaplanner.core.api.domain.solution.PlanningSolution} annotation
+ */
+public class JournaledTenant<Solution_> {
+
+    private final String tenantId;
+    private final long sequenceNumber;
+    private final byte[] solverOptions;
+    private Solution_ solution;
+    // Only used by the writer, the segment of the last record with the full solution
+    private long baseSegmentIndex = -1L;
+
+    public JournaledTenant(String tenantId, long sequenceNumber, byte[] solverOptions, Solution_ solution) {
+        this.tenantId = tenantId;
+        this.sequenceNumber = sequenceNumber;
+        this.solverOptions = solverOptions;
+        this.solution = solution;
+    }
+
+    public String getTenantId() {
+        return tenantId;
+    }
+
+    public long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    /**
+     * @return as submitted, opaque to the journal
+     */
+    public byte[] getSolverOptions() {
+        return solverOptions;
+    }
+
+    /**
+     * @return the last journaled best solution, or the submitted problem if there is none
+     */
+    public Solution_ getSolution() {
+        return solution;
+    }
+
+    public void setSolution(Solution_ solution) {
+        this.solution = solution;
+    }
+
+    long getBaseSegmentIndex() {
+        return baseSegmentIndex;
+    }
+
+    void setBaseSegmentIndex(long baseSegmentIndex) {
+        this.baseSegmentIndex = baseSegmentIndex;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.optaplanner.springbootcloudbalancing.persistence;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts solutions to and from the bytes of a {@link SolverJournal}.
+ * <p>
+ * Only {@link #writeChanges(Object, Object)} is called while tenants are solving,
+ * so it should be cheap and compact.
+ * @param <Solution_> the solution type, the class with the {@link org.optaplanner.core.api.domain.solution.PlanningSolution} annotation
+ */
+public interface SolutionJournalCodec<Solution_> {
+
+    /**
+     * @param solution never null, not modified
+     */
+    byte[] writeSolution(Solution_ solution);
+
+    /**
+     * @return never null, not shared with any other caller
+     */
+    Solution_ readSolution(byte[] bytes);
+
+    /**
+     * @param baseSolution never null, not modified
+     * @param solution never null, not modified
+     * @return the changes that turn the base solution into the solution
+     */
+    byte[] writeChanges(Solution_ baseSolution, Solution_ solution);
+
+    /**
+     * @param baseSolution never null, returned by {@link #readSolution(byte[])} or by this method, might be modified
+     * @param changes written by {@link #writeChanges(Object, Object)} with an equal base solution
+     * @return never null, might be the base solution
+     */
+    Solution_ applyChanges(Solution_ baseSolution, byte[] changes);
+
+    /**
+     * Used to remember the older versions of a best solution, without keeping a clone of each.
+     * @param solution never null, not modified
+     * @return never null, the value of the planning variable of every planning entity, as an int
+     */
+    int[] writeAssignments(Solution_ solution);
+
+    /**
+     * Used by a {@link SolverResultStore}, which serves it as is in the compact representation.
+     * @param solution never null, not modified
+     * @return never null, the compact representation of the solution
+     */
+    byte[] writeCompactSolution(Solution_ solution);
+
+    /**
+     * @param bytes never null, written by {@link #writeCompactSolution(Object)}, not modified
+     * @return never null, not shared with any other caller
+     */
+    Solution_ readCompactSolution(ByteBuffer bytes);
+}
@@ -0,0 +1,534 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.optaplanner.springbootcloudbalancing.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append-only journal of the solver tasks of a {@link org.optaplanner.springbootcloudbalancing.solver.SolverManager},
+ * so the tenants that were still solving when the process died can be resumed from their last best solution.
+ * <p>
+ * It records every submitted problem, the changes of every new best solution and when a tenant stops or is removed.
+ * The records are appended to memory-mapped segment files by a single writer thread, which forces all the records
+ * it collected during a group commit interval to disk at once.
+ * The submitting and solving threads only hand over their problem or best solution, which the writer encodes,
+ * and when a tenant's best solution changes again before the writer gets to it, only the latest one is written.
+ * <p>
+ * A segment is deleted as soon as no unfinished tenant needs it, which is when every tenant that was submitted
+ * in it or before it has stopped, has been removed or has a newer record with its full solution.
+ * So the segments of an unfinished tenant do not pile up, the writer rewrites its last best solution
+ * as such a checkpoint record once its oldest segment is {@link #CHECKPOINT_SEGMENT_DISTANCE} segments old.
+ * <p>
+ * Every record is written as its length, its CRC-32 checksum and its body.
+ * A length of zero marks the end of a segment, and a record with a wrong checksum marks the end of the journal,
+ * because it was torn by a crash: nothing after it is replayed, not even in a later segment.
+ * <p>
+ * A tenant id is journaled as its {@link Object#toString()}, so {@link #replay()} returns it as a String
+ * and tenant ids with the same string, even of different types, must not be journaled at the same time.
+ * @param <Solution_> the solution type, the class with the {@link org.optaplanner.core.api.domain.solution.PlanningSolution} annotation
+ */
+public class SolverJournal<Solution_> {
+
+    private static final Logger logger = LoggerFactory.getLogger(SolverJournal.class);
+
+    private static final String SEGMENT_FILE_SUFFIX = ".journal";
+    private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int CHECKPOINT_SEGMENT_DISTANCE = 2;
+
+    private static final byte SUBMITTED = 0;
+    private static final byte BEST_SOLUTION_CHANGED = 1;
+    private static final byte STOPPED = 2;
+    private static final byte REMOVED = 3;
+
+    private final File directory;
+    private final int segmentSize;
+    private final long groupCommitIntervalMillis;
+    private final SolutionJournalCodec<Solution_> codec;
+
+    private final BlockingQueue<JournalEvent<Solution_>> eventQueue = new LinkedBlockingQueue<>();
+    // Only the latest best solution of a tenant is written
+    private final ConcurrentMap<Comparable<?>, JournalEvent<Solution_>> pendingBestSolutionMap
+            = new ConcurrentHashMap<>();
+    private final List<File> replayedSegmentFileList = new ArrayList<>();
+    private volatile boolean closed = false;
+
+    // Only used by the writer thread
+    private Thread writerThread;
+    private final Map<String, JournaledTenant<Solution_>> tenantIdToJournaledTenantMap = new HashMap<>();
+    private long segmentIndex = 0L;
+    // The segments written since open(), the last one is the current one
+    private final NavigableMap<Long, File> segmentFileMap = new TreeMap<>();
+    private MappedByteBuffer segmentBuffer = null;
+    private final CRC32 crc32 = new CRC32();
+
+    /**
+     * @param directory created if it does not exist
+     * @param segmentSize the size of a segment file in bytes, larger records get a segment of their own
+     * @param groupCommitIntervalMillis the maximum time a best solution waits before it is written
+     */
+    public SolverJournal(File directory, int segmentSize, long groupCommitIntervalMillis,
+            SolutionJournalCodec<Solution_> codec) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.groupCommitIntervalMillis = groupCommitIntervalMillis;
+        this.codec = codec;
+    }
+
+    /**
+     * Reads the existing segments. Call it once, before {@link #open()}.
+     * @return never null, the tenants that had not stopped nor been removed, in the order they were submitted
+     * (or checkpointed, if their submission was deleted), with their last journaled best solution
+     */
+    public List<JournaledTenant<Solution_>> replay() {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalStateException("Cannot create the journal directory (" + directory + ").");
+        }
+        File[] segmentFiles = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_FILE_SUFFIX));
+        Arrays.sort(segmentFiles);
+        Map<String, JournaledTenant<Solution_>> unfinishedTenantMap = new LinkedHashMap<>();
+        int recordCount = 0;
+        boolean torn = false;
+        for (File segmentFile : segmentFiles) {
+            segmentIndex = Math.max(segmentIndex, parseSegmentIndex(segmentFile) + 1L);
+            // Deleted with the others, also if it is not replayed
+            replayedSegmentFileList.add(segmentFile);
+            if (torn) {
+                logger.warn("Ignoring journal segment ({}), because it follows a torn record.", segmentFile);
+                continue;
+            }
+            ByteBuffer buffer = mapSegment(segmentFile, FileChannel.MapMode.READ_ONLY, segmentFile.length());
+            while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+                int length = buffer.getInt();
+                if (length <= 0) {
+                    break;
+                }
+                int checksum = buffer.getInt();
+                if (length > buffer.remaining()) {
+                    logger.warn("Ignoring the torn end of journal segment ({}).", segmentFile);
+                    torn = true;
+                    break;
+                }
+                byte[] body = new byte[length];
+                buffer.get(body);
+                crc32.reset();
+                crc32.update(body);
+                if ((int) crc32.getValue() != checksum) {
+                    logger.warn("Ignoring the torn end of journal segment ({}).", segmentFile);
+                    torn = true;
+                    break;
+                }
+                replayRecord(ByteBuffer.wrap(body), unfinishedTenantMap);
+                recordCount++;
+            }
+        }
+        logger.info("Replayed {} records of {} journal segments, {} tenants had not stopped.",
+                recordCount, segmentFiles.length, unfinishedTenantMap.size());
+        return new ArrayList<>(unfinishedTenantMap.values());
+    }
+
+    private void replayRecord(ByteBuffer body, Map<String, JournaledTenant<Solution_>> unfinishedTenantMap) {
+        byte type = body.get();
+        byte[] tenantIdBytes = new byte[body.getInt()];
+        body.get(tenantIdBytes);
+        String tenantId = new String(tenantIdBytes, StandardCharsets.UTF_8);
+        long sequenceNumber = body.getLong();
+        switch (type) {
+            case SUBMITTED:
+                byte[] solverOptions = new byte[body.getInt()];
+                body.get(solverOptions);
+                Solution_ solution = codec.readSolution(remainingBytes(body));
+                JournaledTenant<Solution_> checkpointedTenant = unfinishedTenantMap.get(tenantId);
+                if (checkpointedTenant != null && checkpointedTenant.getSequenceNumber() == sequenceNumber) {
+                    // A checkpoint, which keeps the tenant's place in the order
+                    checkpointedTenant.setSolution(solution);
+                } else {
+                    unfinishedTenantMap.remove(tenantId);
+                    unfinishedTenantMap.put(tenantId, new JournaledTenant<>(tenantId, sequenceNumber, solverOptions,
+                            solution));
+                }
+                break;
+            case BEST_SOLUTION_CHANGED:
+                JournaledTenant<Solution_> journaledTenant = unfinishedTenantMap.get(tenantId);
+                if (journaledTenant != null && journaledTenant.getSequenceNumber() == sequenceNumber) {
+                    journaledTenant.setSolution(codec.applyChanges(journaledTenant.getSolution(),
+                            remainingBytes(body)));
+                }
+                break;
+            case STOPPED:
+                JournaledTenant<Solution_> stoppedTenant = unfinishedTenantMap.get(tenantId);
+                if (stoppedTenant != null && stoppedTenant.getSequenceNumber() == sequenceNumber) {
+                    unfinishedTenantMap.remove(tenantId);
+                }
+                break;
+            case REMOVED:
+                // Not a later submission with the same tenantId
+                JournaledTenant<Solution_> removedTenant = unfinishedTenantMap.get(tenantId);
+                if (removedTenant != null && removedTenant.getSequenceNumber() == sequenceNumber) {
+                    unfinishedTenantMap.remove(tenantId);
+                }
+                break;
+            default:
+                throw new IllegalStateException("The journal record type (" + type + ") is not supported.");
+        }
+    }
+
+    /**
+     * Starts a new segment and the writer thread.
+     */
+    public void open() {
+        rollSegment(0);
+        writerThread = new Thread(this::write, "SolverJournalWriter");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Deletes the replayed segments once everything submitted so far is on disk.
+     * Call it after the tenants returned by {@link #replay()} have been submitted again.
+     */
+    public void deleteReplayedSegments() {
+        flush().join();
+        for (File segmentFile : replayedSegmentFileList) {
+            if (!segmentFile.delete()) {
+                logger.warn("Cannot delete the replayed journal segment ({}).", segmentFile);
+            }
+        }
+        replayedSegmentFileList.clear();
+    }
+
+    /**
+     * Writes the remaining records and stops the writer thread.
+     * Tenants that stop after this are resumed on the next {@link #replay()}.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        CompletableFuture<Void> flushFuture = flush();
+        closed = true;
+        try {
+            flushFuture.get(10L, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            logger.warn("Cannot write the remaining journal records.", e);
+        }
+        writerThread.interrupt();
+    }
+
+    /**
+     * @return completes when everything journaled before this call is on disk
+     */
+    public CompletableFuture<Void> flush() {
+        JournalEvent<Solution_> flushEvent = new JournalEvent<>(JournalEvent.FLUSH, null, -1L, null, null);
+        if (!closed) {
+            eventQueue.add(flushEvent);
+        } else {
+            flushEvent.flushFuture.complete(null);
+        }
+        return flushEvent.flushFuture;
+    }
+
+    /**
+     * Only hands over the planning problem, the writer thread encodes it.
+     * @param solverOptions how the tenant is solved, returned as is by {@link JournaledTenant#getSolverOptions()}
+     * @param planningProblem never modified, the solver only changes its working clone of it
+     */
+    public void submitted(Comparable<?> tenantId, long sequenceNumber, byte[] solverOptions,
+            Solution_ planningProblem) {
+        addEvent(new JournalEvent<>(SUBMITTED, tenantId.toString(), sequenceNumber, solverOptions,
+                planningProblem));
+    }
+
+    /**
+     * Called by the solving thread, so it only hands over the best solution.
+     * @param bestSolution never modified
+     */
+    public void bestSolutionChanged(Comparable<?> tenantId, long sequenceNumber, Solution_ bestSolution) {
+        if (!closed) {
+            pendingBestSolutionMap.put(tenantId,
+                    new JournalEvent<>(BEST_SOLUTION_CHANGED, tenantId.toString(), sequenceNumber, null,
+                            bestSolution));
+        }
+    }
+
+    public void stopped(Comparable<?> tenantId, long sequenceNumber) {
+        addEvent(new JournalEvent<>(STOPPED, tenantId.toString(), sequenceNumber, null, null));
+    }
+
+    /**
+     * @param sequenceNumber of the removed task, so it never removes a later submission with the same tenantId
+     * that was journaled first
+     */
+    public void removed(Comparable<?> tenantId, long sequenceNumber) {
+        addEvent(new JournalEvent<>(REMOVED, tenantId.toString(), sequenceNumber, null, null));
+    }
+
+    private void addEvent(JournalEvent<Solution_> event) {
+        if (!closed) {
+            eventQueue.add(event);
+        }
+    }
+
+    // ************************************************************************
+    // Writer thread
+    // ************************************************************************
+
+    private void write() {
+        List<JournalEvent<Solution_>> eventList = new ArrayList<>();
+        List<CompletableFuture<Void>> flushFutureList = new ArrayList<>();
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                JournalEvent<Solution_> firstEvent = eventQueue.poll(groupCommitIntervalMillis, TimeUnit.MILLISECONDS);
+                if (firstEvent != null) {
+                    eventList.add(firstEvent);
+                    eventQueue.drainTo(eventList);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // The pending best solutions are written last, so their tenants' submissions precede them
+            boolean written = false;
+            for (JournalEvent<Solution_> event : eventList) {
+                if (event.type == JournalEvent.FLUSH) {
+                    flushFutureList.add(event.flushFuture);
+                } else {
+                    written |= writeEvent(event);
+                }
+            }
+            eventList.clear();
+            for (Iterator<JournalEvent<Solution_>> it = pendingBestSolutionMap.values().iterator(); it.hasNext(); ) {
+                JournalEvent<Solution_> event = it.next();
+                it.remove();
+                written |= writeEvent(event);
+            }
+            if (written) {
+                segmentBuffer.force();
+                if (segmentFileMap.size() > 1) {
+                    compact();
+                }
+            }
+            for (CompletableFuture<Void> flushFuture : flushFutureList) {
+                flushFuture.complete(null);
+            }
+            flushFutureList.clear();
+        }
+    }
+
+    private boolean writeEvent(JournalEvent<Solution_> event) {
+        try {
+            byte[] payload;
+            switch (event.type) {
+                case SUBMITTED:
+                    payload = codec.writeSolution(event.solution);
+                    // The base of the changes of its best solutions
+                    JournaledTenant<Solution_> submittedTenant = new JournaledTenant<>(event.tenantId,
+                            event.sequenceNumber, event.solverOptions, event.solution);
+                    writeRecord(event, payload);
+                    submittedTenant.setBaseSegmentIndex(segmentFileMap.lastKey());
+                    tenantIdToJournaledTenantMap.put(event.tenantId, submittedTenant);
+                    return true;
+                case BEST_SOLUTION_CHANGED:
+                    JournaledTenant<Solution_> journaledTenant = tenantIdToJournaledTenantMap.get(event.tenantId);
+                    if (journaledTenant == null || journaledTenant.getSequenceNumber() != event.sequenceNumber) {
+                        // Stopped or removed meanwhile
+                        return false;
+                    }
+                    payload = codec.writeChanges(journaledTenant.getSolution(), event.solution);
+                    journaledTenant.setSolution(event.solution);
+                    break;
+                case STOPPED:
+                case REMOVED:
+                    JournaledTenant<Solution_> finishedTenant = tenantIdToJournaledTenantMap.get(event.tenantId);
+                    if (finishedTenant != null && finishedTenant.getSequenceNumber() == event.sequenceNumber) {
+                        tenantIdToJournaledTenantMap.remove(event.tenantId);
+                    }
+                    payload = new byte[0];
+                    break;
+                default:
+                    throw new IllegalStateException("The journal record type (" + event.type
+                            + ") is not supported.");
+            }
+            writeRecord(event, payload);
+            return true;
+        } catch (RuntimeException e) {
+            logger.error("Cannot journal the record type ({}) of tenantId ({}).", event.type, event.tenantId, e);
+            return false;
+        }
+    }
+
+    /**
+     * Deletes the oldest segments that no unfinished tenant needs, after checkpointing the unfinished tenants
+     * that hold back the oldest segment for too long.
+     */
+    private void compact() {
+        long oldestSegmentIndex = segmentFileMap.firstKey();
+        if (segmentFileMap.lastKey() - oldestSegmentIndex >= CHECKPOINT_SEGMENT_DISTANCE) {
+            boolean checkpointed = false;
+            for (JournaledTenant<Solution_> journaledTenant : tenantIdToJournaledTenantMap.values()) {
+                if (journaledTenant.getBaseSegmentIndex() == oldestSegmentIndex) {
+                    checkpointed |= writeCheckpoint(journaledTenant);
+                }
+            }
+            if (checkpointed) {
+                // Before the segments that it replaces are deleted
+                segmentBuffer.force();
+            }
+        }
+        long neededSegmentIndex = segmentFileMap.lastKey();
+        for (JournaledTenant<Solution_> journaledTenant : tenantIdToJournaledTenantMap.values()) {
+            neededSegmentIndex = Math.min(neededSegmentIndex, journaledTenant.getBaseSegmentIndex());
+        }
+        for (Iterator<File> it = segmentFileMap.headMap(neededSegmentIndex).values().iterator(); it.hasNext(); ) {
+            File segmentFile = it.next();
+            it.remove();
+            if (!segmentFile.delete()) {
+                logger.warn("Cannot delete the journal segment ({}).", segmentFile);
+            } else {
+                logger.debug("Deleted journal segment ({}).", segmentFile);
+            }
+        }
+    }
+
+    /**
+     * Writes the last best solution of an unfinished tenant as a submission with the same sequence number,
+     * which makes its older records obsolete.
+     */
+    private boolean writeCheckpoint(JournaledTenant<Solution_> journaledTenant) {
+        try {
+            writeRecord(new JournalEvent<>(SUBMITTED, journaledTenant.getTenantId(),
+                    journaledTenant.getSequenceNumber(), journaledTenant.getSolverOptions(), null),
+                    codec.writeSolution(journaledTenant.getSolution()));
+        } catch (RuntimeException e) {
+            logger.error("Cannot checkpoint tenantId ({}).", journaledTenant.getTenantId(), e);
+            return false;
+        }
+        journaledTenant.setBaseSegmentIndex(segmentFileMap.lastKey());
+        return true;
+    }
+
+    /**
+     * Puts the body straight into the segment and fills in its checksum afterwards,
+     * so a crash in between leaves a record with a wrong checksum.
+     */
+    private void writeRecord(JournalEvent<Solution_> event, byte[] payload) {
+        byte[] tenantIdBytes = event.tenantId.getBytes(StandardCharsets.UTF_8);
+        int length = 1 + Integer.BYTES + tenantIdBytes.length + Long.BYTES
+                + (event.type == SUBMITTED ? Integer.BYTES + event.solverOptions.length : 0) + payload.length;
+        if (segmentBuffer.remaining() < RECORD_HEADER_SIZE + length) {
+            segmentBuffer.force();
+            rollSegment(RECORD_HEADER_SIZE + length);
+        }
+        int checksumPosition = segmentBuffer.position() + Integer.BYTES;
+        segmentBuffer.putInt(length).putInt(0);
+        int bodyPosition = segmentBuffer.position();
+        segmentBuffer.put(event.type).putInt(tenantIdBytes.length).put(tenantIdBytes).putLong(event.sequenceNumber);
+        if (event.type == SUBMITTED) {
+            segmentBuffer.putInt(event.solverOptions.length).put(event.solverOptions);
+        }
+        segmentBuffer.put(payload);
+        ByteBuffer body = segmentBuffer.duplicate();
+        body.position(bodyPosition).limit(bodyPosition + length);
+        crc32.reset();
+        crc32.update(body);
+        segmentBuffer.putInt(checksumPosition, (int) crc32.getValue());
+    }
+
+    private void rollSegment(int minimumSize) {
+        File segmentFile = new File(directory, String.format("%020d%s", segmentIndex, SEGMENT_FILE_SUFFIX));
+        segmentBuffer = mapSegment(segmentFile, FileChannel.MapMode.READ_WRITE, Math.max(segmentSize, minimumSize));
+        segmentFileMap.put(segmentIndex, segmentFile);
+        segmentIndex++;
+        logger.debug("Started journal segment ({}).", segmentFile);
+    }
+
+    private static MappedByteBuffer mapSegment(File segmentFile, FileChannel.MapMode mapMode, long size) {
+        List<StandardOpenOption> openOptionList = mapMode == FileChannel.MapMode.READ_ONLY
+                ? Collections.singletonList(StandardOpenOption.READ)
+                : Arrays.asList(StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW);
+        // The mapping stays valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(segmentFile.toPath(),
+                openOptionList.toArray(new StandardOpenOption[0]))) {
+            return channel.map(mapMode, 0L, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot map the journal segment (" + segmentFile + ").", e);
+        }
+    }
+
+    private static long parseSegmentIndex(File segmentFile) {
+        String name = segmentFile.getName();
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SEGMENT_FILE_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("The journal segment (" + segmentFile + ") has an invalid name.", e);
+        }
+    }
+
+    private static byte[] remainingBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static class JournalEvent<Solution_> {
+
+        private static final byte FLUSH = -1;
+
+        private final byte type;
+        private final String tenantId;
+        private final long sequenceNumber;
+        private final byte[] solverOptions;
+        // The planning problem of a submission or the best solution, encoded by the writer thread
+        private final Solution_ solution;
+        private final CompletableFuture<Void> flushFuture;
+
+        private JournalEvent(byte type, String tenantId, long sequenceNumber, byte[] solverOptions,
+                Solution_ solution) {
+            this.type = type;
+            this.tenantId = tenantId;
+            this.sequenceNumber = sequenceNumber;
+            this.solverOptions = solverOptions;
+            this.solution = solution;
+            this.flushFuture = type == FLUSH ? new CompletableFuture<>() : null;
+        }
+    }
+}
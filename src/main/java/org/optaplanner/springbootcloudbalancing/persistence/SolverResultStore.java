@@ -0,0 +1,231 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.optaplanner.springbootcloudbalancing.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the results of the tenants that stopped solving in memory-mapped segment files instead of on the heap,
+ * so the heap grows with the tenants that are solving, not with the ones that finished.
+ * <p>
+ * A result is appended as the JSON and the compact representation of the solution and the JSON of its score,
+ * so both representations that are read most are served straight from the mapped bytes.
+ * The solution itself is only decoded from its compact representation,
+ * by {@link SolutionJournalCodec#readCompactSolution(ByteBuffer)}, when it is needed as an object.
+ * Only a {@link StoredSolverResult} with its offset and lengths stays on the heap.
+ * A segment file is deleted once all its results are deleted.
+ * <p>
+ * It is not a journal: the results do not survive a restart, so the segments of a previous run are deleted.
+ * @param <Solution_> the solution type, the class with the {@link org.optaplanner.core.api.domain.solution.PlanningSolution} annotation
+ */
+public class SolverResultStore<Solution_> {
+
+    private static final Logger logger = LoggerFactory.getLogger(SolverResultStore.class);
+
+    private static final String SEGMENT_FILE_SUFFIX = ".results";
+
+    private final File directory;
+    private final int segmentSize;
+    private final SolutionJournalCodec<Solution_> codec;
+
+    // Guarded by this
+    private long segmentIndex = 0L;
+    private Segment segment = null;
+    private long mappedByteCount = 0L;
+    private boolean closed = false;
+
+    /**
+     * @param directory created if it does not exist
+     * @param segmentSize the size of a segment file in bytes, larger results get a segment of their own
+     */
+    public SolverResultStore(File directory, int segmentSize, SolutionJournalCodec<Solution_> codec) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.codec = codec;
+    }
+
+    /**
+     * Deletes the segments of a previous run. Call it once, before anything is stored.
+     */
+    public synchronized void open() {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalStateException("Cannot create the result store directory (" + directory + ").");
+        }
+        deleteSegmentFiles();
+    }
+
+    /**
+     * Stops storing and deletes all segments.
+     * The results that are still referenced stay readable until they are garbage collected.
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        segment = null;
+        mappedByteCount = 0L;
+        deleteSegmentFiles();
+    }
+
+    /**
+     * @param solutionJson never null, stored as is
+     * @param compactSolution never null, stored as is,
+     * written by {@link SolutionJournalCodec#writeCompactSolution(Object)}
+     * @param scoreJson never null, stored as is
+     * @return never null, keep it to read the result and delete it with {@link #delete(StoredSolverResult)}
+     * @throws IllegalStateException if it is closed
+     */
+    public synchronized StoredSolverResult store(byte[] solutionJson, byte[] compactSolution, byte[] scoreJson) {
+        if (closed) {
+            throw new IllegalStateException("The result store is closed.");
+        }
+        int length = solutionJson.length + compactSolution.length + scoreJson.length;
+        if (segment == null || segment.buffer.capacity() - segment.writeOffset < length) {
+            rollSegment(length);
+        }
+        int offset = segment.writeOffset;
+        ByteBuffer buffer = segment.buffer.duplicate();
+        buffer.position(offset);
+        buffer.put(solutionJson).put(compactSolution).put(scoreJson);
+        segment.writeOffset += length;
+        segment.liveResultCount++;
+        return new StoredSolverResult(segment, offset, solutionJson.length, compactSolution.length,
+                scoreJson.length);
+    }
+
+    /**
+     * @param storedResult never null, returned by {@link #store(byte[], byte[], byte[])}
+     * @return never null, not shared with any other caller
+     */
+    public Solution_ readSolution(StoredSolverResult storedResult) {
+        return codec.readCompactSolution(getCompactSolution(storedResult));
+    }
+
+    /**
+     * @return never null, a read-only view of the mapped bytes, not copied to the heap
+     */
+    public ByteBuffer getSolutionJson(StoredSolverResult storedResult) {
+        return storedResult.slice(storedResult.offset, storedResult.solutionJsonLength);
+    }
+
+    /**
+     * @return never null, a read-only view of the mapped bytes, not copied to the heap
+     */
+    public ByteBuffer getCompactSolution(StoredSolverResult storedResult) {
+        return storedResult.slice(storedResult.offset + storedResult.solutionJsonLength,
+                storedResult.compactSolutionLength);
+    }
+
+    /**
+     * @return never null, a read-only view of the mapped bytes, not copied to the heap
+     */
+    public ByteBuffer getScoreJson(StoredSolverResult storedResult) {
+        return storedResult.slice(storedResult.offset + storedResult.solutionJsonLength
+                + storedResult.compactSolutionLength, storedResult.scoreJsonLength);
+    }
+
+    /**
+     * A view returned earlier stays readable, because the bytes are never overwritten
+     * and a segment stays mapped until its views are garbage collected.
+     * @param storedResult never null, deleted at most once
+     */
+    public synchronized void delete(StoredSolverResult storedResult) {
+        if (closed) {
+            return;
+        }
+        Segment resultSegment = storedResult.segment;
+        resultSegment.liveResultCount--;
+        if (resultSegment.liveResultCount == 0 && resultSegment != segment) {
+            releaseSegment(resultSegment);
+        }
+    }
+
+    /**
+     * @return the size of the segments that are mapped, including the unused end of the current one
+     */
+    public synchronized long getMappedByteCount() {
+        return mappedByteCount;
+    }
+
+    private void rollSegment(int minimumSize) {
+        if (segment != null && segment.liveResultCount == 0) {
+            releaseSegment(segment);
+        }
+        File segmentFile = new File(directory, String.format("%020d%s", segmentIndex, SEGMENT_FILE_SUFFIX));
+        segmentIndex++;
+        int size = Math.max(segmentSize, minimumSize);
+        // The mapping stays valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(segmentFile.toPath(),
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW)) {
+            segment = new Segment(segmentFile, channel.map(FileChannel.MapMode.READ_WRITE, 0L, size));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot map the result store segment (" + segmentFile + ").", e);
+        }
+        mappedByteCount += size;
+        logger.debug("Started result store segment ({}).", segmentFile);
+    }
+
+    private void releaseSegment(Segment releasedSegment) {
+        mappedByteCount -= releasedSegment.buffer.capacity();
+        deleteSegmentFile(releasedSegment.file);
+    }
+
+    private void deleteSegmentFiles() {
+        File[] segmentFiles = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_FILE_SUFFIX));
+        if (segmentFiles != null) {
+            for (File segmentFile : segmentFiles) {
+                deleteSegmentFile(segmentFile);
+            }
+        }
+    }
+
+    private static void deleteSegmentFile(File segmentFile) {
+        if (!segmentFile.delete()) {
+            logger.warn("Cannot delete the result store segment ({}).", segmentFile);
+        }
+    }
+
+    static class Segment {
+
+        private final File file;
+        private final MappedByteBuffer buffer;
+        // Guarded by the store
+        private int writeOffset = 0;
+        private int liveResultCount = 0;
+
+        private Segment(File file, MappedByteBuffer buffer) {
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        ByteBuffer slice(int offset, int length) {
+            ByteBuffer view = buffer.asReadOnlyBuffer();
+            view.position(offset).limit(offset + length);
+            return view.slice();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.optaplanner.springbootcloudbalancing.persistence;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Where a {@link SolverResultStore} put a result: the small part of a stored result that stays on the heap.
+ */
+public final class StoredSolverResult {
+
+    final SolverResultStore.Segment segment;
+    final int offset;
+    final int solutionJsonLength;
+    final int compactSolutionLength;
+    final int scoreJsonLength;
+
+    StoredSolverResult(SolverResultStore.Segment segment, int offset, int solutionJsonLength,
+            int compactSolutionLength, int scoreJsonLength) {
+        this.segment = segment;
+        this.offset = offset;
+        this.solutionJsonLength = solutionJsonLength;
+        this.compactSolutionLength = compactSolutionLength;
+        this.scoreJsonLength = scoreJsonLength;
+    }
+
+    ByteBuffer slice(int sliceOffset, int length) {
+        return segment.slice(sliceOffset, length);
+    }
+
+    /**
+     * @return the number of bytes it takes in its segment
+     */
+    public int getLength() {
+        return solutionJsonLength + compactSolutionLength + scoreJsonLength;
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.optaplanner.springbootcloudbalancing.solver;
+
+import java.nio.ByteBuffer;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.optaplanner.core.api.score.Score;
+
+/**
+ * Immutable best solution of a tenant, published as a whole so its solution, score and JSON always match.
+ * <p>
+ * Publishing it only costs a reference: the JSON is serialized when it is first read, and then reused by every
+ * later read, so a tenant that improves often but is rarely read does not serialize every best solution.
+ * The snapshot of a tenant whose result moved to the result store reads its JSON, its compact representation
+ * and its score from the mapped bytes, and only decodes its solution on demand.
+ */
+public class BestSolutionSnapshot<Solution_> {
+
+    private final long version;
+    private final long problemVersion;
+    // Null if the solution is read on demand or if this is an older version
+    private final Solution_ solution;
+    private final Supplier<Solution_> solutionReader;
+    private final Score score;
+    // Null if the JSON was given or if this is an older version
+    private final ObjectMapper objectMapper;
+    // Null until it is first read, unless it was given
+    private volatile ByteBuffer solutionJson;
+    private volatile ByteBuffer scoreJson;
+    // Null unless the result was stored
+    private final ByteBuffer compactSolution;
+    // Null unless this is an older version
+    private final int[] assignments;
+    private final String eTag;
+
+    /**
+     * @param solverTaskSequenceNumber makes the ETag differ between tasks that reuse a tenantId
+     * @param version 0 for the submitted problem, then incremented for every new best solution
+     * @param problemVersion 0 for the submitted problem, then incremented for every problem fact change
+     * @param objectMapper serializes the solution and the score when their JSON is first read
+     */
+    public BestSolutionSnapshot(long solverTaskSequenceNumber, long version, long problemVersion,
+            Solution_ solution, Score score, ObjectMapper objectMapper) {
+        this(version, problemVersion, solution, null, score, objectMapper, null, null, null, null,
+                toETag(solverTaskSequenceNumber, version));
+    }
+
+    /**
+     * @param solutionReader reads the solution again on every {@link #getSolution()}
+     * @param solutionJson never modified, usually the mapped bytes of a stored result
+     * @param compactSolution never modified, usually the mapped bytes of a stored result
+     * @param scoreJson never modified, usually the mapped bytes of a stored result
+     */
+    public BestSolutionSnapshot(long solverTaskSequenceNumber, long version, Supplier<Solution_> solutionReader,
+            Score score, ByteBuffer solutionJson, ByteBuffer compactSolution, ByteBuffer scoreJson) {
+        this(version, 0L, null, solutionReader, score, null, solutionJson, scoreJson, compactSolution, null,
+                toETag(solverTaskSequenceNumber, version));
+    }
+
+    private BestSolutionSnapshot(long version, long problemVersion, Solution_ solution,
+            Supplier<Solution_> solutionReader, Score score, ObjectMapper objectMapper, ByteBuffer solutionJson,
+            ByteBuffer scoreJson, ByteBuffer compactSolution, int[] assignments, String eTag) {
+        this.version = version;
+        this.problemVersion = problemVersion;
+        this.solution = solution;
+        this.solutionReader = solutionReader;
+        this.score = score;
+        this.objectMapper = objectMapper;
+        this.solutionJson = solutionJson;
+        this.scoreJson = scoreJson;
+        this.compactSolution = compactSolution;
+        this.assignments = assignments;
+        this.eTag = eTag;
+    }
+
+    /**
+     * @param assignments never null, written by
+     * {@link org.optaplanner.springbootcloudbalancing.persistence.SolutionJournalCodec#writeAssignments(Object)}
+     * @return a copy that retains only the assignments, to remember an older version cheaply
+     */
+    public BestSolutionSnapshot<Solution_> withAssignmentsOnly(int[] assignments) {
+        return new BestSolutionSnapshot<>(version, problemVersion, null, null, score, null, null, null, null,
+                assignments, eTag);
+    }
+
+    private static String toETag(long solverTaskSequenceNumber, long version) {
+        return "\"" + solverTaskSequenceNumber + "." + version + "\"";
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    long getProblemVersion() {
+        return problemVersion;
+    }
+
+    /**
+     * @return null for an older version, never modified, but do not modify it either;
+     * a new copy on every call if the solution is read on demand
+     */
+    public Solution_ getSolution() {
+        return solution != null || solutionReader == null ? solution : solutionReader.get();
+    }
+
+    /**
+     * @return null unless this is an older version, never modified, but do not modify it either
+     */
+    public int[] getAssignments() {
+        return assignments;
+    }
+
+    /**
+     * @return null if the submitted problem has not been scored yet
+     */
+    public Score getScore() {
+        return score;
+    }
+
+    /**
+     * @return null for an older version, never modified, but do not modify it either;
+     * a copy of the mapped bytes on every call if they are not on the heap
+     */
+    public byte[] getSolutionJson() {
+        return toBytes(serializeSolutionJson());
+    }
+
+    /**
+     * @return null for an older version, never modified, but do not modify it either;
+     * a copy of the mapped bytes on every call if they are not on the heap
+     */
+    public byte[] getScoreJson() {
+        return toBytes(serializeScoreJson());
+    }
+
+    /**
+     * @return null for an older version, a read-only view that is not copied
+     */
+    public ByteBuffer getSolutionJsonBuffer() {
+        ByteBuffer json = serializeSolutionJson();
+        return json == null ? null : json.asReadOnlyBuffer();
+    }
+
+    /**
+     * @return true if the tenant stopped and its result was stored, then every request gets a new snapshot
+     */
+    public boolean isStored() {
+        return compactSolution != null;
+    }
+
+    /**
+     * @return null unless the result was stored, then a read-only view of the mapped bytes of its compact
+     * representation, which is not copied
+     */
+    public ByteBuffer getCompactSolutionBuffer() {
+        return compactSolution == null ? null : compactSolution.asReadOnlyBuffer();
+    }
+
+    /**
+     * @return null for an older version, a read-only view that is not copied
+     */
+    public ByteBuffer getScoreJsonBuffer() {
+        ByteBuffer json = serializeScoreJson();
+        return json == null ? null : json.asReadOnlyBuffer();
+    }
+
+    private ByteBuffer serializeSolutionJson() {
+        ByteBuffer json = solutionJson;
+        if (json == null && objectMapper != null) {
+            synchronized (this) {
+                json = solutionJson;
+                if (json == null) {
+                    json = serialize(solution);
+                    solutionJson = json;
+                }
+            }
+        }
+        return json;
+    }
+
+    private ByteBuffer serializeScoreJson() {
+        ByteBuffer json = scoreJson;
+        if (json == null && objectMapper != null) {
+            // Small, so two readers might both serialize it
+            json = serialize(score);
+            scoreJson = json;
+        }
+        return json;
+    }
+
+    private ByteBuffer serialize(Object value) {
+        try {
+            return ByteBuffer.wrap(objectMapper.writeValueAsBytes(value));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize the best solution (version " + version + ").", e);
+        }
+    }
+
+    private static byte[] toBytes(ByteBuffer buffer) {
+        if (buffer == null) {
+            return null;
+        } else if (buffer.hasArray()) {
+            // Wraps the whole array
+            return buffer.array();
+        }
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    /**
+     * @return a strong entity tag, including the quotes
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * @param representation names another representation of the same best solution, such as {@code compact-json}
+     * @return a strong entity tag, including the quotes, that differs from {@link #getETag()}
+     * and from the one of every other representation
+     */
+    public String getETag(String representation) {
+        return eTag.substring(0, eTag.length() - 1) + "-" + representation + "\"";
+    }
+}
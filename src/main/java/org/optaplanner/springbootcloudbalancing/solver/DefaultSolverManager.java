@@ -16,18 +16,62 @@
 
 package org.optaplanner.springbootcloudbalancing.solver;
 
-import java.util.HashMap;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 
 import org.optaplanner.core.api.score.Score;
+import org.optaplanner.core.api.solver.Solver;
 import org.optaplanner.core.api.solver.SolverFactory;
+import org.optaplanner.core.config.partitionedsearch.PartitionedSearchPhaseConfig;
+import org.optaplanner.core.config.phase.PhaseConfig;
+import org.optaplanner.core.config.score.director.ScoreDirectorFactoryConfig;
+import org.optaplanner.core.config.solver.SolverConfig;
+import org.optaplanner.core.config.solver.termination.TerminationConfig;
+import org.optaplanner.core.impl.domain.solution.descriptor.SolutionDescriptor;
+import org.optaplanner.core.impl.score.director.InnerScoreDirectorFactory;
+import org.optaplanner.core.impl.score.director.drools.LegacyDroolsScoreDirectorFactory;
+import org.optaplanner.core.impl.solver.ProblemFactChange;
+import org.optaplanner.springbootcloudbalancing.persistence.JournaledTenant;
+import org.optaplanner.springbootcloudbalancing.persistence.SolutionJournalCodec;
+import org.optaplanner.springbootcloudbalancing.persistence.SolverJournal;
+import org.optaplanner.springbootcloudbalancing.persistence.SolverResultStore;
+import org.optaplanner.springbootcloudbalancing.persistence.StoredSolverResult;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -36,57 +80,1099 @@ public class DefaultSolverManager<Solution_> implements SolverManager<Solution_>
     private static final Logger logger = LoggerFactory.getLogger(DefaultSolverManager.class);
 
     private static final String SOLVER_CONFIG = "org/optaplanner/springbootcloudbalancing/solver/cloudBalancingSolverConfig.xml";
+    private static final String PARTITIONED_SOLVER_CONFIG = "org/optaplanner/springbootcloudbalancing/solver/cloudBalancingPartitionedSolverConfig.xml";
 
-    private ExecutorService executorService;
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    /**
+     * Zero or less means all available processors but 2, with a minimum of 1.
+     */
+    @Value("${solver.scheduler.worker-count:0}")
+    private int workerCount;
+    @Value("${solver.scheduler.queue-capacity:1000}")
+    private int queueCapacity;
+    /**
+     * Zero or less means all available processors.
+     */
+    @Value("${solver.scheduler.core-budget:0}")
+    private int coreBudget;
+    @Value("${solver.scheduler.entities-per-move-thread:1000}")
+    private int entitiesPerMoveThread;
+    @Value("${solver.scheduler.max-move-thread-count:8}")
+    private int maxMoveThreadCount;
+    /**
+     * A solver that is not given a millisecondsSpentLimit gets this much time per planning entity,
+     * with the entity count rounded to the nearest power of two, within the min and the max, so small problems do not hold a core longer than they need
+     * and large ones are not stopped long before they converge.
+     */
+    @Value("${solver.termination.milliseconds-spent-per-entity:10}")
+    private long millisecondsSpentPerEntity;
+    @Value("${solver.termination.min-milliseconds-spent:2000}")
+    private long minMillisecondsSpent;
+    /**
+     * Also caps a requested millisecondsSpentLimit.
+     */
+    @Value("${solver.termination.max-milliseconds-spent:300000}")
+    private long maxMillisecondsSpent;
+    /**
+     * A solver that is not given an unimprovedMillisecondsSpentLimit stops after this percentage of its time limit
+     * without a better best solution, but never before the min.
+     */
+    @Value("${solver.termination.unimproved-percentage:25}")
+    private int unimprovedPercentage;
+    /**
+     * The number of idle solvers kept for reuse, 0 builds a new solver for every task.
+     */
+    @Value("${solver.pool.capacity:32}")
+    private int solverPoolCapacity;
+    @Value("${solver.snapshots.history-size:8}")
+    private int bestSolutionHistorySize;
+    @Value("${solver.registry.stopped-tenant-ttl-seconds:3600}")
+    private long stoppedTenantTtlSeconds;
+    @Value("${solver.registry.max-tenants:10000}")
+    private int maxTenants;
+    @Value("${solver.registry.eviction-interval-seconds:60}")
+    private long evictionIntervalSeconds;
+    /**
+     * Empty means no journal, so no tenant is resumed after a restart.
+     */
+    @Value("${solver.journal.directory:}")
+    private String journalDirectory;
+    @Value("${solver.journal.segment-size-mb:64}")
+    private int journalSegmentSizeMb;
+    @Value("${solver.journal.group-commit-interval-millis:100}")
+    private long journalGroupCommitIntervalMillis;
+    /**
+     * False keeps the best solution of a stopped tenant on the heap until it is evicted.
+     */
+    @Value("${solver.results.store-enabled:true}")
+    private boolean resultStoreEnabled;
+    /**
+     * Empty means a new temporary directory, deleted at shutdown.
+     */
+    @Value("${solver.results.directory:}")
+    private String resultStoreDirectory;
+    @Value("${solver.results.segment-size-mb:64}")
+    private int resultStoreSegmentSizeMb;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private SolutionJournalCodec<Solution_> solutionJournalCodec;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private ThreadPoolExecutor executorService;
+    private SolverTaskQueue solverTaskQueue;
+    private ScheduledExecutorService evictionExecutorService;
+    // Writes the assignments of the older best solutions of every tenant, instead of their solver threads
+    private ExecutorService historyCompactionExecutorService;
+    // Null if there is no journal
+    private SolverJournal<Solution_> solverJournal = null;
+    // Null if the stopped tenants keep their best solution on the heap
+    private SolverResultStore<Solution_> solverResultStore = null;
+    // Null unless the result store directory is temporary
+    private File temporaryResultStoreDirectory = null;
     private SolverFactory<Solution_> solverFactory;
-    private Map<Comparable<?>, SolverTask<Solution_>> tenantIdToSolverTaskMap;
+    private final Map<SolverMode, SolverFactory<Solution_>> solverModeToSolverFactoryMap
+            = new EnumMap<>(SolverMode.class);
+    private SolutionDescriptor<Solution_> solutionDescriptor;
+    private SolverCoreBudget solverCoreBudget;
+    private SolverPool<Solution_> solverPool;
+    // False if this JVM cannot build a solver with a thread count, then every solver is built as configured
+    private boolean threadCountSupported = true;
+    private final Map<SolverMode, ConcurrentMap<Integer, SolverFactory<Solution_>>> threadCountSolverFactoryMaps
+            = new EnumMap<>(SolverMode.class);
+    private ConcurrentMap<Comparable<?>, SolverTask<Solution_>> tenantIdToSolverTaskMap;
+    // A tenant is in at most one of both maps, except while its result moves to the result store
+    private ConcurrentMap<Comparable<?>, StoppedTenant<Solution_>> tenantIdToStoppedTenantMap;
+    private long warmUpTimeMillis;
+    private final AtomicLong solverTaskSequence = new AtomicLong(0L);
+    private volatile long averageSolvingTimeMillis = -1L;
+
+    // Not tagged per tenant, so the number of meters does not grow with the number of tenants
+    private Counter finishedTenantCounter;
+    private Counter bestSolutionImprovementCounter;
+    private Consumer<BestSolutionSnapshot<Solution_>> bestSolutionImprovementListener;
+    private Timer startDelayTimer;
+    private Counter pooledSolverCounter;
+    private Counter builtSolverCounter;
+    private Timer solverAcquisitionTimer;
+    // Null if this JVM cannot measure the allocations of a thread
+    private DistributionSummary solverAcquisitionAllocationSummary = null;
+    private Timer firstFeasibleSolutionTimer;
+    private DistributionSummary scoreCalculationCountSummary;
+    private DistributionSummary scoreCalculationSpeedSummary;
 
     public DefaultSolverManager() {
         solverFactory = SolverFactory.createFromXmlResource(SOLVER_CONFIG, DefaultSolverManager.class.getClassLoader());
-        tenantIdToSolverTaskMap = new HashMap<>();
+        tenantIdToSolverTaskMap = new ConcurrentHashMap<>();
+        tenantIdToStoppedTenantMap = new ConcurrentHashMap<>();
     }
 
     @PostConstruct
     private void init() {
+        warmUp();
         int numAvailableProcessors = Runtime.getRuntime().availableProcessors();
         logger.info("Number of available processors: {}.", numAvailableProcessors);
-        executorService = Executors.newFixedThreadPool(numAvailableProcessors - 2);
+        if (workerCount <= 0) {
+            workerCount = Math.max(1, numAvailableProcessors - 2);
+        }
+        logger.info("Solving with {} worker threads and a queue capacity of {} tasks.", workerCount, queueCapacity);
+        if (coreBudget <= 0) {
+            coreBudget = numAvailableProcessors;
+        }
+        threadCountSupported = supportsThreadCounts();
+        if (!threadCountSupported) {
+            maxMoveThreadCount = 0;
+        }
+        logger.info("Solving with a budget of {} cores and at most {} move threads per solver.",
+                coreBudget, maxMoveThreadCount);
+        solverCoreBudget = new SolverCoreBudget(coreBudget, entitiesPerMoveThread, maxMoveThreadCount);
+        solverPool = new SolverPool<>(solverPoolCapacity);
+        solverTaskQueue = new SolverTaskQueue(queueCapacity);
+        historyCompactionExecutorService = Executors.newSingleThreadExecutor();
+        executorService = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS, solverTaskQueue) {
+            @Override
+            protected void beforeExecute(Thread thread, Runnable runnable) {
+                super.beforeExecute(thread, runnable);
+                startSolver((SolverTask<Solution_>) runnable);
+            }
+
+            @Override
+            protected void afterExecute(Runnable runnable, Throwable throwable) {
+                super.afterExecute(runnable, throwable);
+                SolverTask<Solution_> solverTask = (SolverTask<Solution_>) runnable;
+                if (solverTask.getMoveThreadCount() >= 0) {
+                    solverCoreBudget.release(solverTask.getMoveThreadCount());
+                    releaseSolver(solverTask);
+                    recordSolvingTime(solverTask);
+                    recordFinishedSolverTask(solverTask);
+                }
+                storeResult(solverTask);
+            }
+        };
+        if (resultStoreEnabled) {
+            openResultStore();
+        }
+        registerMeters();
+        evictionExecutorService = Executors.newSingleThreadScheduledExecutor();
+        evictionExecutorService.scheduleWithFixedDelay(this::evictStoppedTenants,
+                evictionIntervalSeconds, evictionIntervalSeconds, TimeUnit.SECONDS);
+        if (!journalDirectory.isEmpty()) {
+            openJournal();
+        }
+    }
+
+    /**
+     * Registers the solver manager meters. They are aggregated over all tenants: the distributions
+     * are recorded per tenant, but never tagged with its tenant id.
+     */
+    private void registerMeters() {
+        for (SolverStatus solverStatus : SolverStatus.values()) {
+            Gauge.builder("solver.tenants", this, solverManager -> solverManager.countTenants(solverStatus))
+                    .description("The number of tenants that are known, per solver status")
+                    .tag("status", solverStatus.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+        finishedTenantCounter = Counter.builder("solver.tenants.finished")
+                .description("The number of tenants that stopped solving")
+                .register(meterRegistry);
+        Gauge.builder("solver.queue.depth", solverTaskQueue, SolverTaskQueue::size)
+                .description("The number of tenants that wait for a worker thread")
+                .register(meterRegistry);
+        Gauge.builder("solver.cores.reserved", solverCoreBudget, SolverCoreBudget::getReservedCoreCount)
+                .description("The cores reserved by the solver threads and their move threads")
+                .register(meterRegistry);
+        startDelayTimer = Timer.builder("solver.start.delay")
+                .description("The time from the submission of a tenant until its solver starts")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        if (solverResultStore != null) {
+            Gauge.builder("solver.results.mapped", solverResultStore, SolverResultStore::getMappedByteCount)
+                    .description("The size of the memory-mapped files that hold the results of stopped tenants")
+                    .baseUnit("bytes")
+                    .register(meterRegistry);
+        }
+        Gauge.builder("solver.pool.idle", solverPool, SolverPool::getIdleSolverCount)
+                .description("The solvers of stopped tenants that are kept for reuse")
+                .register(meterRegistry);
+        pooledSolverCounter = Counter.builder("solver.acquisitions")
+                .description("The number of solvers that tenants got, reused from the pool or built")
+                .tag("source", "pool")
+                .register(meterRegistry);
+        builtSolverCounter = Counter.builder("solver.acquisitions")
+                .description("The number of solvers that tenants got, reused from the pool or built")
+                .tag("source", "built")
+                .register(meterRegistry);
+        solverAcquisitionTimer = Timer.builder("solver.acquisition")
+                .description("The time to reuse or build the solver of a tenant, part of its start delay")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        if (THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) THREAD_MX_BEAN).isThreadAllocatedMemoryEnabled()) {
+            solverAcquisitionAllocationSummary = DistributionSummary.builder("solver.acquisition.allocated")
+                    .description("The memory allocated to reuse or build the solver of a tenant")
+                    .baseUnit("bytes")
+                    .register(meterRegistry);
+        }
+        firstFeasibleSolutionTimer = Timer.builder("solver.first.feasible.solution")
+                .description("The time from the start of a solver until its first feasible best solution")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        bestSolutionImprovementCounter = Counter.builder("solver.best.solution.improvements")
+                .description("The number of new best solutions of all tenants")
+                .register(meterRegistry);
+        bestSolutionImprovementListener = bestSolutionSnapshot -> bestSolutionImprovementCounter.increment();
+        scoreCalculationCountSummary = DistributionSummary.builder("solver.score.calculation.count")
+                .description("The number of score calculations of a tenant, when it stops")
+                .register(meterRegistry);
+        scoreCalculationSpeedSummary = DistributionSummary.builder("solver.score.calculation.speed")
+                .description("The average score calculations per second of a tenant, when it stops")
+                .baseUnit("calculations/s")
+                .register(meterRegistry);
+        Gauge.builder("solver.solving.score.calculation.speed", this,
+                DefaultSolverManager::calculateSolvingScoreCalculationSpeed)
+                .description("The score calculations per second of all tenants that are solving")
+                .baseUnit("calculations/s")
+                .register(meterRegistry);
+    }
+
+    private int countTenants(SolverStatus solverStatus) {
+        int count = 0;
+        for (SolverTask<Solution_> solverTask : tenantIdToSolverTaskMap.values()) {
+            if (solverTask.getSolverStatus() == solverStatus) {
+                count++;
+            }
+        }
+        if (solverStatus == SolverStatus.STOPPED) {
+            count += tenantIdToStoppedTenantMap.size();
+        }
+        return count;
+    }
+
+    private int getTenantCount() {
+        return tenantIdToSolverTaskMap.size() + tenantIdToStoppedTenantMap.size();
+    }
+
+    private double calculateSolvingScoreCalculationSpeed() {
+        long nowMillis = System.currentTimeMillis();
+        double speed = 0.0;
+        for (SolverTask<Solution_> solverTask : tenantIdToSolverTaskMap.values()) {
+            long startedTimeMillis = solverTask.getStartedTimeMillis();
+            if (startedTimeMillis >= 0L && solverTask.getStoppedTimeMillis() < 0L) {
+                speed += solverTask.getScoreCalculationCount() * 1000.0 / Math.max(1L, nowMillis - startedTimeMillis);
+            }
+        }
+        return speed;
+    }
+
+    private void recordFinishedSolverTask(SolverTask<Solution_> solverTask) {
+        finishedTenantCounter.increment();
+        long startedTimeMillis = solverTask.getStartedTimeMillis();
+        long firstFeasibleTimeMillis = solverTask.getFirstFeasibleTimeMillis();
+        if (firstFeasibleTimeMillis >= 0L) {
+            firstFeasibleSolutionTimer.record(firstFeasibleTimeMillis - startedTimeMillis, TimeUnit.MILLISECONDS);
+        }
+        long scoreCalculationCount = solverTask.getScoreCalculationCount();
+        scoreCalculationCountSummary.record(scoreCalculationCount);
+        scoreCalculationSpeedSummary.record(scoreCalculationCount * 1000.0
+                / Math.max(1L, solverTask.getStoppedTimeMillis() - startedTimeMillis));
+    }
+
+    /**
+     * Submits the tenants that had not stopped before the last shutdown or crash again,
+     * starting from their last journaled best solution,
+     * and then starts over with a journal that only has those tenants.
+     */
+    private void openJournal() {
+        solverJournal = new SolverJournal<>(new File(journalDirectory), journalSegmentSizeMb * 1024 * 1024,
+                journalGroupCommitIntervalMillis, solutionJournalCodec);
+        List<JournaledTenant<Solution_>> unfinishedTenantList = solverJournal.replay();
+        solverJournal.open();
+        for (JournaledTenant<Solution_> unfinishedTenant : unfinishedTenantList) {
+            try {
+                solve(unfinishedTenant.getTenantId(), unfinishedTenant.getSolution(),
+                        objectMapper.readValue(unfinishedTenant.getSolverOptions(), SolverOptions.class));
+            } catch (IOException | RuntimeException e) {
+                logger.error("Cannot resume the journaled tenantId ({}).", unfinishedTenant.getTenantId(), e);
+            }
+        }
+        solverJournal.deleteReplayedSegments();
+        logger.info("Resumed {} journaled tenants from journal directory ({}).",
+                unfinishedTenantList.size(), journalDirectory);
+    }
+
+    private void openResultStore() {
+        File directory;
+        if (resultStoreDirectory.isEmpty()) {
+            try {
+                temporaryResultStoreDirectory = Files.createTempDirectory("solver-results").toFile();
+            } catch (IOException e) {
+                logger.warn("Keeping the results of stopped tenants on the heap,"
+                        + " because a temporary result store directory cannot be created.", e);
+                return;
+            }
+            directory = temporaryResultStoreDirectory;
+        } else {
+            directory = new File(resultStoreDirectory);
+        }
+        solverResultStore = new SolverResultStore<>(directory, resultStoreSegmentSizeMb * 1024 * 1024,
+                solutionJournalCodec);
+        solverResultStore.open();
+        logger.info("Storing the results of stopped tenants in result store directory ({}).", directory);
+    }
+
+    /**
+     * Builds one solver eagerly, so the score DRL is compiled and the domain classes are scanned at startup,
+     * and then configures the {@link SolverFactory} to reuse those results for every {@link Solver} it builds.
+     * The solver factory of every other {@link SolverMode} is a copy of it with other phases.
+     */
+    private void warmUp() {
+        long startTimeMillis = System.currentTimeMillis();
+        Solver<Solution_> solver = solverFactory.buildSolver();
+        solutionDescriptor = ((InnerScoreDirectorFactory<Solution_>) solver.getScoreDirectorFactory())
+                .getSolutionDescriptor();
+        reuseBuiltSolver(solverFactory, solver);
+        long compileTimeMillis = System.currentTimeMillis() - startTimeMillis;
+        solverModeToSolverFactoryMap.put(SolverMode.LOCAL_SEARCH, solverFactory);
+        SolverFactory<Solution_> partitionedSolverFactory = solverFactory.cloneSolverFactory();
+        partitionedSolverFactory.getSolverConfig().setPhaseConfigList(SolverFactory.createFromXmlResource(
+                PARTITIONED_SOLVER_CONFIG, DefaultSolverManager.class.getClassLoader())
+                .getSolverConfig().getPhaseConfigList());
+        solverModeToSolverFactoryMap.put(SolverMode.PARTITIONED_SEARCH, partitionedSolverFactory);
+        for (SolverFactory<Solution_> modeSolverFactory : solverModeToSolverFactoryMap.values()) {
+            modeSolverFactory.buildSolver();
+        }
+        warmUpTimeMillis = System.currentTimeMillis() - startTimeMillis;
+        logger.info("Solver warm-up took {} ms ({} ms to compile the score director factory, {} ms to build a solver per solverMode).",
+                warmUpTimeMillis, compileTimeMillis, warmUpTimeMillis - compileTimeMillis);
+    }
+
+    /**
+     * Configures the solver factory to reuse the scanned domain classes and the compiled score DRL of the solver.
+     * @param solver built by the solver factory
+     */
+    static <Solution_> void reuseBuiltSolver(SolverFactory<Solution_> solverFactory, Solver<Solution_> solver) {
+        InnerScoreDirectorFactory<Solution_> scoreDirectorFactory
+                = (InnerScoreDirectorFactory<Solution_>) solver.getScoreDirectorFactory();
+        SolverConfig solverConfig = solverFactory.getSolverConfig();
+        SolutionDescriptor<Solution_> solutionDescriptor = scoreDirectorFactory.getSolutionDescriptor();
+        solverConfig.setScanAnnotatedClassesConfig(null);
+        solverConfig.setSolutionClass(solutionDescriptor.getSolutionClass());
+        solverConfig.setEntityClassList(new ArrayList<>(solutionDescriptor.getEntityClassSet()));
+        if (scoreDirectorFactory instanceof LegacyDroolsScoreDirectorFactory) {
+            ScoreDirectorFactoryConfig scoreDirectorFactoryConfig = solverConfig.getScoreDirectorFactoryConfig();
+            scoreDirectorFactoryConfig.setKieBase(
+                    ((LegacyDroolsScoreDirectorFactory<Solution_>) scoreDirectorFactory).getKieBase());
+            scoreDirectorFactoryConfig.setScoreDrlList(null);
+            scoreDirectorFactoryConfig.setScoreDrlFileList(null);
+            scoreDirectorFactoryConfig.setKieBaseConfigurationProperties(null);
+        }
+    }
+
+    /**
+     * The move thread count and the runnable part thread limit of every solver are decided by the
+     * {@link SolverCoreBudget}, so they override the ones of the solver configuration.
+     * @return false if this JVM cannot build a solver with a thread count
+     */
+    private boolean supportsThreadCounts() {
+        for (SolverMode solverMode : SolverMode.values()) {
+            SolverConfig solverConfig = solverModeToSolverFactoryMap.get(solverMode).getSolverConfig();
+            if (solverConfig.getMoveThreadCount() != null) {
+                logger.info("Ignoring the configured moveThreadCount ({}) in favor of the core budget.",
+                        solverConfig.getMoveThreadCount());
+                solverConfig.setMoveThreadCount(null);
+            }
+            threadCountSolverFactoryMaps.put(solverMode, new ConcurrentHashMap<>());
+        }
+        try {
+            for (SolverMode solverMode : SolverMode.values()) {
+                buildSolver(solverMode, 2, new TerminationConfig());
+            }
+            return true;
+        } catch (RuntimeException e) {
+            // For example, OptaPlanner 7 resolves those thread counts with a JavaScript engine, which Java 15+ lacks
+            logger.warn("Solving without move threads and with the default runnable part thread limit,"
+                    + " because a solver with a thread count cannot be built.", e);
+            threadCountSolverFactoryMaps.values().forEach(Map::clear);
+            return false;
+        }
+    }
+
+    /**
+     * The solver factories are shared and cached per thread count, only the termination is specific to a task.
+     * It is set on a copy of the shared configuration, which reuses its compiled score DRL,
+     * so that copy costs about as little as building the solver itself.
+     * @param moveThreadCount granted by the {@link SolverCoreBudget},
+     * with partitioned search the parts run on the solver thread's core and those move thread cores
+     * @param terminationConfig never null, replaces the termination of the solver configuration
+     */
+    private Solver<Solution_> buildSolver(SolverMode solverMode, int moveThreadCount,
+            TerminationConfig terminationConfig) {
+        SolverFactory<Solution_> taskSolverFactory = getThreadCountSolverFactory(solverMode, moveThreadCount)
+                .cloneSolverFactory();
+        taskSolverFactory.getSolverConfig().setTerminationConfig(terminationConfig);
+        return taskSolverFactory.buildSolver();
+    }
+
+    private SolverFactory<Solution_> getThreadCountSolverFactory(SolverMode solverMode, int moveThreadCount) {
+        SolverFactory<Solution_> modeSolverFactory = solverModeToSolverFactoryMap.get(solverMode);
+        if (!threadCountSupported || (moveThreadCount == 0 && solverMode == SolverMode.LOCAL_SEARCH)) {
+            return modeSolverFactory;
+        }
+        return threadCountSolverFactoryMaps.get(solverMode).computeIfAbsent(moveThreadCount, key -> {
+            SolverFactory<Solution_> threadCountSolverFactory = modeSolverFactory.cloneSolverFactory();
+            SolverConfig solverConfig = threadCountSolverFactory.getSolverConfig();
+            switch (solverMode) {
+                case LOCAL_SEARCH:
+                    solverConfig.setMoveThreadCount(Integer.toString(moveThreadCount));
+                    break;
+                case PARTITIONED_SEARCH:
+                    for (PhaseConfig phaseConfig : solverConfig.getPhaseConfigList()) {
+                        if (phaseConfig instanceof PartitionedSearchPhaseConfig) {
+                            ((PartitionedSearchPhaseConfig) phaseConfig).setRunnablePartThreadLimit(
+                                    Integer.toString(1 + moveThreadCount));
+                        }
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("The solverMode (" + solverMode + ") is not implemented.");
+            }
+            return threadCountSolverFactory;
+        });
+    }
+
+    /**
+     * @param entityCount the size of the problem, which decides the time limits that the solverOptions lack
+     */
+    private TerminationConfig buildTerminationConfig(SolverOptions solverOptions, int entityCount) {
+        long millisecondsSpentLimit = solverOptions.getMillisecondsSpentLimit() != null
+                ? Math.min(solverOptions.getMillisecondsSpentLimit(), maxMillisecondsSpent)
+                : Math.max(minMillisecondsSpent, Math.min(toSizeBucket(entityCount) * millisecondsSpentPerEntity,
+                        maxMillisecondsSpent));
+        long unimprovedMillisecondsSpentLimit = solverOptions.getUnimprovedMillisecondsSpentLimit() != null
+                ? solverOptions.getUnimprovedMillisecondsSpentLimit()
+                : Math.max(minMillisecondsSpent, millisecondsSpentLimit * unimprovedPercentage / 100L);
+        TerminationConfig terminationConfig = new TerminationConfig()
+                .withMillisecondsSpentLimit(millisecondsSpentLimit);
+        // A default that is not shorter than the time limit never stops the solver first, a requested one is kept
+        if (solverOptions.getUnimprovedMillisecondsSpentLimit() != null
+                || unimprovedMillisecondsSpentLimit < millisecondsSpentLimit) {
+            terminationConfig.setUnimprovedMillisecondsSpentLimit(unimprovedMillisecondsSpentLimit);
+        }
+        terminationConfig.setBestScoreLimit(solverOptions.getBestScoreLimit());
+        terminationConfig.setScoreCalculationCountLimit(solverOptions.getScoreCalculationCountLimit());
+        return terminationConfig;
+    }
+
+    /**
+     * The default time limits are part of the solver pool key,
+     * so they only take a few values instead of one per problem size, and tenants of a similar size share solvers.
+     * @return the power of two that is nearest to the entityCount
+     */
+    private static long toSizeBucket(int entityCount) {
+        long lowerBucket = Long.highestOneBit(Math.max(1, entityCount));
+        return entityCount - lowerBucket < lowerBucket * 2L - entityCount ? lowerBucket : lowerBucket * 2L;
+    }
+
+    /**
+     * Refuses the solverOptions before they are queued, instead of when their solver is built.
+     * @throws InvalidSolverOptionsException if a limit is negative, a time limit is 0,
+     * which would stop the solver right away, or the bestScoreLimit is not a score
+     */
+    private void validateSolverOptions(Comparable<?> tenantId, SolverOptions solverOptions) {
+        if (solverOptions.getSolverMode() == null) {
+            throw new InvalidSolverOptionsException(tenantId, "the solverMode is null.");
+        }
+        for (Long limit : new Long[]{solverOptions.getMillisecondsSpentLimit(),
+                solverOptions.getUnimprovedMillisecondsSpentLimit(), solverOptions.getScoreCalculationCountLimit()}) {
+            if (limit != null && limit < 0L) {
+                throw new InvalidSolverOptionsException(tenantId, "a limit (" + limit + ") is negative.");
+            }
+        }
+        for (Long timeLimit : new Long[]{solverOptions.getMillisecondsSpentLimit(),
+                solverOptions.getUnimprovedMillisecondsSpentLimit()}) {
+            if (timeLimit != null && timeLimit == 0L) {
+                throw new InvalidSolverOptionsException(tenantId,
+                        "a time limit (" + timeLimit + ") is 0, so it would not solve at all.");
+            }
+        }
+        if (solverOptions.getBestScoreLimit() != null) {
+            try {
+                solutionDescriptor.getScoreDefinition().parseScore(solverOptions.getBestScoreLimit());
+            } catch (IllegalArgumentException e) {
+                throw new InvalidSolverOptionsException(tenantId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Called by a worker thread before it runs the task. Waits for a free core if there is none.
+     * If it fails, the task stops without solving.
+     */
+    private void startSolver(SolverTask<Solution_> solverTask) {
+        int moveThreadCount;
+        try {
+            moveThreadCount = solverCoreBudget.acquire(solverTask.getEntityCount(), solverTaskQueue.size());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            SolverOptions solverOptions = solverTask.getSolverOptions();
+            TerminationConfig terminationConfig = buildTerminationConfig(solverOptions, solverTask.getEntityCount());
+            logger.debug("Solving tenantId ({}) for at most {} ms.", solverTask.getTenantId(),
+                    terminationConfig.getMillisecondsSpentLimit());
+            solverTask.startSolver(acquireSolver(solverOptions.getSolverMode(), moveThreadCount, terminationConfig),
+                    moveThreadCount);
+            // After the solver is acquired, so the start delay includes building it
+            startDelayTimer.record(System.currentTimeMillis() - solverTask.getSubmittedTimeMillis(),
+                    TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            solverCoreBudget.release(moveThreadCount);
+            logger.error("Cannot build a solver for tenantId ({}).", solverTask.getTenantId(), e);
+        }
+    }
+
+    /**
+     * Reuses an idle solver with the same configuration if the pool has one, otherwise builds one.
+     */
+    private Solver<Solution_> acquireSolver(SolverMode solverMode, int moveThreadCount,
+            TerminationConfig terminationConfig) {
+        long startNanos = System.nanoTime();
+        long startAllocatedBytes = getCurrentThreadAllocatedBytes();
+        Solver<Solution_> solver = solverPool.borrow(
+                toSolverPoolKey(solverMode, moveThreadCount, terminationConfig));
+        if (solver != null) {
+            pooledSolverCounter.increment();
+        } else {
+            solver = buildSolver(solverMode, moveThreadCount, terminationConfig);
+            builtSolverCounter.increment();
+        }
+        solverAcquisitionTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        if (solverAcquisitionAllocationSummary != null) {
+            solverAcquisitionAllocationSummary.record(getCurrentThreadAllocatedBytes() - startAllocatedBytes);
+        }
+        return solver;
+    }
+
+    /**
+     * Called by a worker thread after it ran the task.
+     */
+    private void releaseSolver(SolverTask<Solution_> solverTask) {
+        Solver<Solution_> solver = solverTask.releaseSolver();
+        if (solver == null) {
+            return;
+        }
+        SolverOptions solverOptions = solverTask.getSolverOptions();
+        // The same termination as the one the solver was acquired with, because it only depends on the task
+        solverPool.giveBack(toSolverPoolKey(solverOptions.getSolverMode(), solverTask.getMoveThreadCount(),
+                buildTerminationConfig(solverOptions, solverTask.getEntityCount())), solver);
+    }
+
+    /**
+     * Everything that {@link #buildSolver(SolverMode, int, TerminationConfig)} configures per task.
+     */
+    private static Object toSolverPoolKey(SolverMode solverMode, int moveThreadCount,
+            TerminationConfig terminationConfig) {
+        return Arrays.asList(solverMode, moveThreadCount, terminationConfig.getMillisecondsSpentLimit(),
+                terminationConfig.getUnimprovedMillisecondsSpentLimit(), terminationConfig.getBestScoreLimit(),
+                terminationConfig.getScoreCalculationCountLimit());
+    }
+
+    /**
+     * Called by a worker thread after it ran the task.
+     * Replaces the stopped task by a {@link StoppedTenant} with its best solution in the result store,
+     * so the task, its best solutions and its listeners are garbage collected.
+     */
+    private void storeResult(SolverTask<Solution_> solverTask) {
+        if (solverResultStore == null || solverTask.getStoppedTimeMillis() < 0L) {
+            return;
+        }
+        Comparable<?> tenantId = solverTask.getTenantId();
+        BestSolutionSnapshot<Solution_> bestSolutionSnapshot = solverTask.getBestSolutionSnapshot();
+        StoredSolverResult storedResult;
+        try {
+            // Both representations are served from the mapped bytes, the JSON is not serialized again if it was read
+            storedResult = solverResultStore.store(bestSolutionSnapshot.getSolutionJson(),
+                    solutionJournalCodec.writeCompactSolution(bestSolutionSnapshot.getSolution()),
+                    bestSolutionSnapshot.getScoreJson());
+        } catch (RuntimeException e) {
+            logger.warn("Keeping the result of tenantId ({}) on the heap, because it cannot be stored.",
+                    tenantId, e);
+            return;
+        }
+        StoppedTenant<Solution_> stoppedTenant = new StoppedTenant<>(tenantId, solverTask.getSequenceNumber(),
+                bestSolutionSnapshot.getVersion(), bestSolutionSnapshot.getScore(),
+                solverTask.getStoppedTimeMillis(), storedResult);
+        // Added before the task is removed, so the tenant is never missing in between
+        tenantIdToStoppedTenantMap.put(tenantId, stoppedTenant);
+        if (!tenantIdToSolverTaskMap.remove(tenantId, solverTask)) {
+            // Removed, evicted or replanned meanwhile
+            if (tenantIdToStoppedTenantMap.remove(tenantId, stoppedTenant)) {
+                solverResultStore.delete(storedResult);
+            }
+        }
+    }
+
+    /**
+     * A new snapshot per call, so nothing of a stopped tenant stays on the heap between requests.
+     */
+    private BestSolutionSnapshot<Solution_> toBestSolutionSnapshot(StoppedTenant<Solution_> stoppedTenant) {
+        StoredSolverResult storedResult = stoppedTenant.getStoredResult();
+        return new BestSolutionSnapshot<>(stoppedTenant.getSequenceNumber(), stoppedTenant.getVersion(),
+                () -> solverResultStore.readSolution(storedResult), stoppedTenant.getScore(),
+                solverResultStore.getSolutionJson(storedResult), solverResultStore.getCompactSolution(storedResult),
+                solverResultStore.getScoreJson(storedResult));
+    }
+
+    private static long getCurrentThreadAllocatedBytes() {
+        if (!(THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean)) {
+            return 0L;
+        }
+        return ((com.sun.management.ThreadMXBean) THREAD_MX_BEAN)
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    public long getWarmUpTimeMillis() {
+        return warmUpTimeMillis;
     }
 
     @PreDestroy
     private void shutdown() {
         logger.info("Shutting down {}.", DefaultSolverManager.class.getName());
+        // Before the solvers are stopped, so their tenants are resumed after a restart
+        if (solverJournal != null) {
+            solverJournal.close();
+        }
+        evictionExecutorService.shutdownNow();
         executorService.shutdownNow();
+        historyCompactionExecutorService.shutdownNow();
+        if (solverResultStore != null) {
+            solverResultStore.close();
+        }
+        if (temporaryResultStoreDirectory != null && !temporaryResultStoreDirectory.delete()) {
+            logger.warn("Cannot delete the temporary result store directory ({}).", temporaryResultStoreDirectory);
+        }
     }
 
     @Override
-    public void solve(Comparable<?> tenantId, Solution_ planningProblem) {
-        synchronized (this) {
-            if (tenantIdToSolverTaskMap.containsKey(tenantId)) {
-                throw new IllegalArgumentException("Tenant id (" + tenantId + ") already exists.");
+    public void solve(Comparable<?> tenantId, Solution_ planningProblem, SolverOptions solverOptions) {
+        submit(tenantId, planningProblem, solverOptions);
+        logger.info("A new solver task was created with tenantId ({}), priority ({}) and solverMode ({}).",
+                tenantId, solverOptions.getPriority(), solverOptions.getSolverMode());
+        if (getTenantCount() > maxTenants) {
+            evictionExecutorService.execute(this::evictStoppedTenants);
+        }
+    }
+
+    @Override
+    public List<SolverSubmissionResult> solveBatch(List<SolverSubmission<Solution_>> submissionList) {
+        List<SolverSubmissionResult> resultList = new ArrayList<>(submissionList.size());
+        int acceptedCount = 0;
+        for (SolverSubmission<Solution_> submission : submissionList) {
+            Comparable<?> tenantId = submission.getTenantId();
+            try {
+                submit(tenantId, submission.getPlanningProblem(), submission.getSolverOptions());
+                resultList.add(new SolverSubmissionResult(tenantId, SolverSubmissionStatus.ACCEPTED, null));
+                acceptedCount++;
+            } catch (SolverQueueFullException e) {
+                resultList.add(new SolverSubmissionResult(tenantId, SolverSubmissionStatus.QUEUE_FULL,
+                        e.getMessage()));
+            } catch (InvalidSolverOptionsException e) {
+                resultList.add(new SolverSubmissionResult(tenantId,
+                        SolverSubmissionStatus.INVALID_SOLVER_OPTIONS, e.getMessage()));
+            } catch (IllegalArgumentException e) {
+                resultList.add(new SolverSubmissionResult(tenantId, SolverSubmissionStatus.TENANT_EXISTS,
+                        e.getMessage()));
             }
-            SolverTask<Solution_> newSolverTask = new SolverTask<>(tenantId, solverFactory.buildSolver(), planningProblem);
-            executorService.submit(newSolverTask);
-            tenantIdToSolverTaskMap.put(tenantId, newSolverTask);
-            logger.info("A new solver task was created with tenantId ({}).", tenantId);
+        }
+        // Once per batch instead of once per tenant
+        logger.info("A batch of {} submissions created {} new solver tasks.", submissionList.size(), acceptedCount);
+        if (getTenantCount() > maxTenants) {
+            evictionExecutorService.execute(this::evictStoppedTenants);
+        }
+        return resultList;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the tenant already exists
+     * @throws InvalidSolverOptionsException if the solverOptions are invalid
+     * @throws SolverQueueFullException if the solver queue is full
+     */
+    private void submit(Comparable<?> tenantId, Solution_ planningProblem, SolverOptions solverOptions) {
+        validateSolverOptions(tenantId, solverOptions);
+        if (tenantIdToSolverTaskMap.containsKey(tenantId) || tenantIdToStoppedTenantMap.containsKey(tenantId)) {
+            throw new IllegalArgumentException("Tenant id (" + tenantId + ") already exists.");
+        }
+        if (solverTaskQueue.remainingCapacity() == 0) {
+            throw new SolverQueueFullException(tenantId, queueCapacity);
+        }
+        SolverTask<Solution_> newSolverTask = createSolverTask(tenantId, planningProblem, solverOptions);
+        if (tenantIdToSolverTaskMap.putIfAbsent(tenantId, newSolverTask) != null) {
+            throw new IllegalArgumentException("Tenant id (" + tenantId + ") already exists.");
+        }
+        journalSolverTask(newSolverTask, planningProblem);
+        try {
+            executorService.execute(newSolverTask);
+        } catch (RejectedExecutionException e) {
+            tenantIdToSolverTaskMap.remove(tenantId, newSolverTask);
+            journalRemovedTenant(tenantId, newSolverTask.getSequenceNumber());
+            throw new SolverQueueFullException(tenantId, queueCapacity);
+        }
+    }
+
+    @Override
+    public void replan(Comparable<?> tenantId, Solution_ planningProblem, SolverOptions solverOptions) {
+        validateSolverOptions(tenantId, solverOptions);
+        SolverTask<Solution_> oldSolverTask = tenantIdToSolverTaskMap.get(tenantId);
+        // Null if the old task is still there
+        StoppedTenant<Solution_> stoppedTenant = oldSolverTask == null ? getStoppedTenant(tenantId) : null;
+        if (oldSolverTask != null && oldSolverTask.getSolverStatus() != SolverStatus.STOPPED) {
+            throw new TenantStillSolvingException(tenantId);
+        }
+        if (solverTaskQueue.remainingCapacity() == 0) {
+            throw new SolverQueueFullException(tenantId, queueCapacity);
+        }
+        if (planningProblem == null) {
+            planningProblem = oldSolverTask != null ? oldSolverTask.getBestSolutionSnapshot().getSolution()
+                    : solverResultStore.readSolution(stoppedTenant.getStoredResult());
+        }
+        SolverTask<Solution_> newSolverTask = createSolverTask(tenantId, planningProblem, solverOptions);
+        if (oldSolverTask != null) {
+            if (!tenantIdToSolverTaskMap.replace(tenantId, oldSolverTask, newSolverTask)) {
+                throw new TenantStillSolvingException(tenantId);
+            }
+        } else {
+            if (tenantIdToSolverTaskMap.putIfAbsent(tenantId, newSolverTask) != null) {
+                throw new TenantStillSolvingException(tenantId);
+            }
+            if (!tenantIdToStoppedTenantMap.remove(tenantId, stoppedTenant)) {
+                // Removed or evicted meanwhile
+                tenantIdToSolverTaskMap.remove(tenantId, newSolverTask);
+                throw new TenantNotFoundException(tenantId);
+            }
+        }
+        journalSolverTask(newSolverTask, planningProblem);
+        try {
+            executorService.execute(newSolverTask);
+        } catch (RejectedExecutionException e) {
+            if (oldSolverTask != null) {
+                tenantIdToSolverTaskMap.replace(tenantId, newSolverTask, oldSolverTask);
+            } else {
+                tenantIdToStoppedTenantMap.put(tenantId, stoppedTenant);
+                tenantIdToSolverTaskMap.remove(tenantId, newSolverTask);
+            }
+            // The old task had stopped, so it would not be resumed either
+            journalRemovedTenant(tenantId, newSolverTask.getSequenceNumber());
+            throw new SolverQueueFullException(tenantId, queueCapacity);
+        }
+        if (stoppedTenant != null) {
+            solverResultStore.delete(stoppedTenant.getStoredResult());
+        }
+        logger.info("A solver task was recreated to replan tenantId ({}) with priority ({}) and solverMode ({}).",
+                tenantId, solverOptions.getPriority(), solverOptions.getSolverMode());
+    }
+
+    private SolverTask<Solution_> createSolverTask(Comparable<?> tenantId, Solution_ planningProblem,
+            SolverOptions solverOptions) {
+        SolverTask<Solution_> solverTask = new SolverTask<>(tenantId, solverOptions,
+                solverTaskSequence.getAndIncrement(), planningProblem,
+                solutionDescriptor.getEntityCount(planningProblem), objectMapper, solutionJournalCodec,
+                historyCompactionExecutorService, bestSolutionHistorySize);
+        solverTask.addBestSolutionListener(bestSolutionImprovementListener);
+        return solverTask;
+    }
+
+    private void journalSolverTask(SolverTask<Solution_> solverTask, Solution_ planningProblem) {
+        if (solverJournal == null) {
+            return;
+        }
+        Comparable<?> tenantId = solverTask.getTenantId();
+        long sequenceNumber = solverTask.getSequenceNumber();
+        byte[] solverOptions;
+        try {
+            solverOptions = objectMapper.writeValueAsBytes(solverTask.getSolverOptions());
+        } catch (JsonProcessingException e) {
+            logger.error("Cannot journal tenantId ({}), so it is not resumed after a restart.", tenantId, e);
+            return;
+        }
+        solverJournal.submitted(tenantId, sequenceNumber, solverOptions, planningProblem);
+        solverTask.addBestSolutionListener(bestSolutionSnapshot -> solverJournal.bestSolutionChanged(
+                tenantId, sequenceNumber, bestSolutionSnapshot.getSolution()));
+        solverTask.getTerminationFuture().whenComplete(
+                (bestSolution, throwable) -> solverJournal.stopped(tenantId, sequenceNumber));
+    }
+
+    private void journalRemovedTenant(Comparable<?> tenantId, long sequenceNumber) {
+        if (solverJournal != null) {
+            solverJournal.removed(tenantId, sequenceNumber);
         }
     }
 
     @Override
     public Solution_ getBestSolution(Comparable<?> tenantId) {
         logger.debug("Getting best solution of tenantId ({}).", tenantId);
-        return tenantIdToSolverTaskMap.get(tenantId).getBestSolution();
+        SolverTask<Solution_> solverTask = tenantIdToSolverTaskMap.get(tenantId);
+        if (solverTask == null) {
+            return solverResultStore.readSolution(getStoppedTenant(tenantId).getStoredResult());
+        }
+        return solverTask.getBestSolutionSnapshot().getSolution();
     }
 
     @Override
     public Score getBestScore(Comparable<?> tenantId) {
         logger.debug("Getting best score of tenantId ({}).", tenantId);
-        return tenantIdToSolverTaskMap.get(tenantId).getBestScore();
+        SolverTask<Solution_> solverTask = tenantIdToSolverTaskMap.get(tenantId);
+        if (solverTask == null) {
+            return getStoppedTenant(tenantId).getScore();
+        }
+        return solverTask.getBestSolutionSnapshot().getScore();
+    }
+
+    @Override
+    public BestSolutionSnapshot<Solution_> getBestSolutionSnapshot(Comparable<?> tenantId) {
+        SolverTask<Solution_> solverTask = tenantIdToSolverTaskMap.get(tenantId);
+        if (solverTask == null) {
+            return toBestSolutionSnapshot(getStoppedTenant(tenantId));
+        }
+        return solverTask.getBestSolutionSnapshot();
     }
 
     @Override
     public SolverStatus getSolverStatus(Comparable<?> tenantId) {
         logger.debug("Getting solver status of tenantId ({}).", tenantId);
-        return tenantIdToSolverTaskMap.get(tenantId).getSolverStatus();
+        SolverTask<Solution_> solverTask = tenantIdToSolverTaskMap.get(tenantId);
+        if (solverTask == null) {
+            getStoppedTenant(tenantId);
+            return SolverStatus.STOPPED;
+        }
+        return solverTask.getSolverStatus();
+    }
+
+    @Override
+    public SolverQueuePosition getQueuePosition(Comparable<?> tenantId) {
+        SolverTask<Solution_> solverTask = tenantIdToSolverTaskMap.get(tenantId);
+        if (solverTask == null) {
+            getStoppedTenant(tenantId);
+            return new SolverQueuePosition(SolverStatus.STOPPED, 0, 0L);
+        }
+        int position = solverTaskQueue.positionOf(solverTask);
+        if (position < 0) {
+            return new SolverQueuePosition(solverTask.getSolverStatus(), 0, 0L);
+        }
+        long solvingTimeMillis = averageSolvingTimeMillis;
+        Long estimatedWaitMillis = solvingTimeMillis < 0L ? null
+                : (position / workerCount + 1) * solvingTimeMillis;
+        return new SolverQueuePosition(SolverStatus.QUEUED, position, estimatedWaitMillis);
+    }
+
+    @Override
+    public BestSolutionSnapshot<Solution_> getBestSolutionSnapshot(Comparable<?> tenantId, long version) {
+        SolverTask<Solution_> solverTask = tenantIdToSolverTaskMap.get(tenantId);
+        if (solverTask == null) {
+            // The older versions were not stored
+            StoppedTenant<Solution_> stoppedTenant = getStoppedTenant(tenantId);
+            return stoppedTenant.getVersion() == version ? toBestSolutionSnapshot(stoppedTenant) : null;
+        }
+        return solverTask.getBestSolutionSnapshot(version);
+    }
+
+    @Override
+    public void addProblemFactChanges(Comparable<?> tenantId,
+            List<ProblemFactChange<Solution_>> problemFactChangeList) {
+        SolverTask<Solution_> solverTask = tenantIdToSolverTaskMap.get(tenantId);
+        if (solverTask == null) {
+            getStoppedTenant(tenantId);
+            throw new TenantNotSolvingException(tenantId);
+        }
+        solverTask.addProblemFactChanges(problemFactChangeList);
+        logger.info("{} problem fact changes were added to tenantId ({}).", problemFactChangeList.size(), tenantId);
+    }
+
+    @Override
+    public void addBestSolutionListener(Comparable<?> tenantId,
+            Consumer<BestSolutionSnapshot<Solution_>> bestSolutionListener) {
+        SolverTask<Solution_> solverTask = tenantIdToSolverTaskMap.get(tenantId);
+        if (solverTask == null) {
+            // It has no more best solutions
+            getStoppedTenant(tenantId);
+            return;
+        }
+        solverTask.addBestSolutionListener(bestSolutionListener);
+    }
+
+    @Override
+    public void removeBestSolutionListener(Comparable<?> tenantId,
+            Consumer<BestSolutionSnapshot<Solution_>> bestSolutionListener) {
+        SolverTask<Solution_> solverTask = tenantIdToSolverTaskMap.get(tenantId);
+        if (solverTask != null) {
+            solverTask.removeBestSolutionListener(bestSolutionListener);
+        }
+    }
+
+    @Override
+    public CompletionStage<BestSolutionSnapshot<Solution_>> getTerminationFuture(Comparable<?> tenantId) {
+        SolverTask<Solution_> solverTask = tenantIdToSolverTaskMap.get(tenantId);
+        if (solverTask == null) {
+            return CompletableFuture.completedFuture(toBestSolutionSnapshot(getStoppedTenant(tenantId)));
+        }
+        CompletableFuture<BestSolutionSnapshot<Solution_>> terminationFuture = new CompletableFuture<>();
+        BiConsumer<Solution_, Throwable> terminationListener = (bestSolution, throwable) -> {
+            if (throwable != null) {
+                // Keeps the cancellation of a task that never started
+                terminationFuture.completeExceptionally(throwable);
+            } else {
+                terminationFuture.complete(solverTask.getBestSolutionSnapshot());
+            }
+        };
+        solverTask.addTerminationListener(terminationListener);
+        // Also when it is cancelled, so an abandoned wait does not keep its listener
+        terminationFuture.whenComplete((bestSolutionSnapshot, throwable)
+                -> solverTask.removeTerminationListener(terminationListener));
+        return terminationFuture;
+    }
+
+    @Override
+    public CompletionStage<BestSolutionSnapshot<Solution_>> getBestSolutionFuture(Comparable<?> tenantId,
+            Score targetScore) {
+        SolverTask<Solution_> solverTask = tenantIdToSolverTaskMap.get(tenantId);
+        if (solverTask == null) {
+            return CompletableFuture.completedFuture(toBestSolutionSnapshot(getStoppedTenant(tenantId)));
+        }
+        CompletableFuture<BestSolutionSnapshot<Solution_>> bestSolutionFuture = new CompletableFuture<>();
+        BiConsumer<Solution_, Throwable> terminationListener = (bestSolution, throwable)
+                -> bestSolutionFuture.complete(solverTask.getBestSolutionSnapshot());
+        solverTask.addTerminationListener(terminationListener);
+        // Also when it is cancelled, so an abandoned wait does not keep its listeners
+        bestSolutionFuture.whenComplete((bestSolutionSnapshot, throwable)
+                -> solverTask.removeTerminationListener(terminationListener));
+        if (targetScore != null) {
+            Consumer<BestSolutionSnapshot<Solution_>> targetScoreListener = bestSolutionSnapshot -> {
+                if (isTargetScoreReached(bestSolutionSnapshot, targetScore)) {
+                    bestSolutionFuture.complete(bestSolutionSnapshot);
+                }
+            };
+            solverTask.addBestSolutionListener(targetScoreListener);
+            bestSolutionFuture.whenComplete((bestSolutionSnapshot, throwable)
+                    -> solverTask.removeBestSolutionListener(targetScoreListener));
+            // The target can be reached before the listener was added
+            targetScoreListener.accept(solverTask.getBestSolutionSnapshot());
+        }
+        return bestSolutionFuture;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static boolean isTargetScoreReached(BestSolutionSnapshot<?> bestSolutionSnapshot, Score targetScore) {
+        Score score = bestSolutionSnapshot.getScore();
+        return score != null && score.isSolutionInitialized() && score.compareTo(targetScore) >= 0;
+    }
+
+    @Override
+    public void removeTenant(Comparable<?> tenantId) {
+        SolverTask<Solution_> solverTask = tenantIdToSolverTaskMap.remove(tenantId);
+        long sequenceNumber;
+        if (solverTask != null) {
+            if (executorService.remove(solverTask)) {
+                solverTask.cancel();
+            } else {
+                solverTask.terminateEarly();
+            }
+            sequenceNumber = solverTask.getSequenceNumber();
+        } else {
+            StoppedTenant<Solution_> stoppedTenant = tenantIdToStoppedTenantMap.remove(tenantId);
+            if (stoppedTenant == null) {
+                throw new TenantNotFoundException(tenantId);
+            }
+            solverResultStore.delete(stoppedTenant.getStoredResult());
+            sequenceNumber = stoppedTenant.getSequenceNumber();
+        }
+        // A resubmission of the tenantId might already be journaled, it has another sequence number
+        journalRemovedTenant(tenantId, sequenceNumber);
+        logger.info("The solver task with tenantId ({}) was removed.", tenantId);
+    }
+
+    /**
+     * Keeps an exponential moving average of the solving time, to estimate the wait time of queued tasks.
+     */
+    private synchronized void recordSolvingTime(SolverTask<?> solverTask) {
+        long solvingTimeMillis = solverTask.getStoppedTimeMillis() - solverTask.getStartedTimeMillis();
+        averageSolvingTimeMillis = averageSolvingTimeMillis < 0L ? solvingTimeMillis
+                : (averageSolvingTimeMillis * 4L + solvingTimeMillis) / 5L;
+    }
+
+    /**
+     * Call it after the tenant was not found in the {@link #tenantIdToSolverTaskMap},
+     * because a task is added to the other map before it is removed from that one.
+     */
+    private StoppedTenant<Solution_> getStoppedTenant(Comparable<?> tenantId) {
+        StoppedTenant<Solution_> stoppedTenant = tenantIdToStoppedTenantMap.get(tenantId);
+        if (stoppedTenant == null) {
+            throw new TenantNotFoundException(tenantId);
+        }
+        return stoppedTenant;
+    }
+
+    /**
+     * Removes the stopped tenants that outlived their time to live
+     * and then, while there are more than {@link #maxTenants}, the stopped tenants that stopped first,
+     * whether their result is in the result store or not.
+     * Tasks that are still queued or solving are never evicted.
+     */
+    private void evictStoppedTenants() {
+        long evictionTimeMillis = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(stoppedTenantTtlSeconds);
+        List<SolverTask<Solution_>> stoppedSolverTaskList = new ArrayList<>();
+        for (SolverTask<Solution_> solverTask : tenantIdToSolverTaskMap.values()) {
+            long stoppedTimeMillis = solverTask.getStoppedTimeMillis();
+            if (stoppedTimeMillis < 0L) {
+                continue;
+            }
+            if (stoppedTimeMillis <= evictionTimeMillis) {
+                evict(solverTask);
+            } else {
+                stoppedSolverTaskList.add(solverTask);
+            }
+        }
+        List<StoppedTenant<Solution_>> stoppedTenantList = new ArrayList<>();
+        for (StoppedTenant<Solution_> stoppedTenant : tenantIdToStoppedTenantMap.values()) {
+            if (stoppedTenant.getStoppedTimeMillis() <= evictionTimeMillis) {
+                evict(stoppedTenant);
+            } else {
+                stoppedTenantList.add(stoppedTenant);
+            }
+        }
+        int excessTenantCount = getTenantCount() - maxTenants;
+        if (excessTenantCount > 0) {
+            stoppedSolverTaskList.sort(Comparator.comparingLong(SolverTask::getStoppedTimeMillis));
+            stoppedTenantList.sort(Comparator.comparingLong(StoppedTenant::getStoppedTimeMillis));
+            int taskIndex = 0;
+            int stoppedTenantIndex = 0;
+            for (int i = 0; i < excessTenantCount; i++) {
+                boolean hasTask = taskIndex < stoppedSolverTaskList.size();
+                boolean hasStoppedTenant = stoppedTenantIndex < stoppedTenantList.size();
+                if (hasTask && (!hasStoppedTenant || stoppedSolverTaskList.get(taskIndex).getStoppedTimeMillis()
+                        <= stoppedTenantList.get(stoppedTenantIndex).getStoppedTimeMillis())) {
+                    evict(stoppedSolverTaskList.get(taskIndex++));
+                } else if (hasStoppedTenant) {
+                    evict(stoppedTenantList.get(stoppedTenantIndex++));
+                } else {
+                    break;
+                }
+            }
+        }
+    }
+
+    private void evict(StoppedTenant<Solution_> stoppedTenant) {
+        if (tenantIdToStoppedTenantMap.remove(stoppedTenant.getTenantId(), stoppedTenant)) {
+            solverResultStore.delete(stoppedTenant.getStoredResult());
+            logger.info("The stopped tenant with tenantId ({}) was evicted.", stoppedTenant.getTenantId());
+        }
+    }
+
+    private void evict(SolverTask<Solution_> solverTask) {
+        if (tenantIdToSolverTaskMap.remove(solverTask.getTenantId(), solverTask)) {
+            logger.info("The stopped solver task with tenantId ({}) was evicted.", solverTask.getTenantId());
+        }
     }
 }
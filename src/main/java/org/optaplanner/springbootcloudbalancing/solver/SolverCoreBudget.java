@@ -0,0 +1,90 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.optaplanner.springbootcloudbalancing.solver;
+
+/**
+ * Hands out the cores of the machine to the solvers as they start: 1 for the solver thread
+ * and, for a large enough problem, some more for its move threads.
+ * <p>
+ * The move thread count of a solver is fixed once it is built, so the budget is rebalanced as solvers start:
+ * cores released by a stopped solver go to the next solvers, and the free cores are shared
+ * with the tasks that wait to start. A solver only starts once a core is free.
+ */
+class SolverCoreBudget {
+
+    private final int coreCount;
+    private final int entitiesPerMoveThread;
+    private final int maxMoveThreadCount;
+
+    // Guarded by this
+    private int reservedCoreCount = 0;
+    private int waitingSolverCount = 0;
+
+    /**
+     * @param coreCount at least 1
+     * @param entitiesPerMoveThread at least 1, a smaller problem than this many entities per move thread gets less
+     * @param maxMoveThreadCount 0 to never solve with move threads
+     */
+    SolverCoreBudget(int coreCount, int entitiesPerMoveThread, int maxMoveThreadCount) {
+        this.coreCount = coreCount;
+        this.entitiesPerMoveThread = entitiesPerMoveThread;
+        this.maxMoveThreadCount = maxMoveThreadCount;
+    }
+
+    /**
+     * Waits until a core is free and then reserves the cores of a solver.
+     * @param entityCount the size of the problem
+     * @param queuedTaskCount the number of tasks that wait for a worker thread, to share the free cores with
+     * @return the move thread count of the solver, 0 for none, never 1 because that is slower than none
+     * @throws InterruptedException if interrupted while waiting, nothing is reserved then
+     */
+    synchronized int acquire(int entityCount, int queuedTaskCount) throws InterruptedException {
+        waitingSolverCount++;
+        try {
+            while (reservedCoreCount >= coreCount) {
+                wait();
+            }
+        } finally {
+            waitingSolverCount--;
+        }
+        int freeCoreCount = coreCount - reservedCoreCount - 1;
+        int sharedCoreCount = freeCoreCount / (queuedTaskCount + waitingSolverCount + 1);
+        int moveThreadCount = Math.min(Math.min(entityCount / entitiesPerMoveThread, sharedCoreCount),
+                maxMoveThreadCount);
+        if (moveThreadCount < 2) {
+            moveThreadCount = 0;
+        }
+        reservedCoreCount += 1 + moveThreadCount;
+        return moveThreadCount;
+    }
+
+    /**
+     * @param moveThreadCount returned by {@link #acquire(int, int)}
+     */
+    synchronized void release(int moveThreadCount) {
+        reservedCoreCount -= 1 + moveThreadCount;
+        notifyAll();
+    }
+
+    public int getCoreCount() {
+        return coreCount;
+    }
+
+    public synchronized int getReservedCoreCount() {
+        return reservedCoreCount;
+    }
+}
@@ -16,15 +16,102 @@
 
 package org.optaplanner.springbootcloudbalancing.solver;
 
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Consumer;
+
 import org.optaplanner.core.api.score.Score;
+import org.optaplanner.core.impl.solver.ProblemFactChange;
 
 public interface SolverManager<Solution_> {
 
-    void solve(Comparable<?> tenantId, Solution_ planningSolution);
+    default void solve(Comparable<?> tenantId, Solution_ planningSolution) {
+        solve(tenantId, planningSolution, new SolverOptions());
+    }
+
+    /**
+     * @param solverOptions never null, not modified afterwards
+     * @throws SolverQueueFullException if there are too many tenants waiting to be solved
+     */
+    void solve(Comparable<?> tenantId, Solution_ planningSolution, SolverOptions solverOptions);
+
+    /**
+     * Submits many tenants in one pass, each as with {@link #solve(Comparable, Object, SolverOptions)}.
+     * A tenant that cannot be submitted does not stop the others.
+     * @param submissionList never null, submitted in order
+     * @return never null, a result per submission, in the same order
+     */
+    List<SolverSubmissionResult> solveBatch(List<SolverSubmission<Solution_>> submissionList);
+
+    /**
+     * Solves a tenant that has stopped solving again.
+     * The solver keeps the assignments of the planning problem, so it only needs to assign the unassigned entities
+     * and then improves from there.
+     * @param planningProblem null to continue from the current best solution of the tenant
+     * @param solverOptions never null, not modified afterwards
+     * @throws TenantStillSolvingException if the tenant has not stopped solving yet
+     */
+    void replan(Comparable<?> tenantId, Solution_ planningProblem, SolverOptions solverOptions);
 
     Solution_ getBestSolution(Comparable<?> tenantId);
 
     Score getBestScore(Comparable<?> tenantId);
 
+    /**
+     * @return never null, version 0 holds the submitted problem until the solver finds a best solution
+     */
+    BestSolutionSnapshot<Solution_> getBestSolutionSnapshot(Comparable<?> tenantId);
+
+    /**
+     * @return null if that version is unknown or has been discarded, only the most recent versions are remembered,
+     * or if a problem fact change happened since;
+     * only the current version has its solution and JSON, an older one only has its assignments
+     */
+    BestSolutionSnapshot<Solution_> getBestSolutionSnapshot(Comparable<?> tenantId, long version);
+
     SolverStatus getSolverStatus(Comparable<?> tenantId);
+
+    SolverQueuePosition getQueuePosition(Comparable<?> tenantId);
+
+    /**
+     * Applies the changes to the running solver of the tenant, which keeps its current best solution
+     * instead of starting from scratch. The changes are applied together, between two steps.
+     * @throws TenantNotSolvingException if the solver of the tenant has stopped
+     */
+    void addProblemFactChanges(Comparable<?> tenantId, List<ProblemFactChange<Solution_>> problemFactChangeList);
+
+    /**
+     * @param bestSolutionListener called on the solver thread for every new best solution, so it must return quickly
+     */
+    void addBestSolutionListener(Comparable<?> tenantId,
+            Consumer<BestSolutionSnapshot<Solution_>> bestSolutionListener);
+
+    /**
+     * Does nothing if the tenant does not exist (anymore).
+     */
+    void removeBestSolutionListener(Comparable<?> tenantId,
+            Consumer<BestSolutionSnapshot<Solution_>> bestSolutionListener);
+
+    /**
+     * Does not block. Cancel the returned stage to stop waiting before it completes.
+     * @return completes with the final best solution when the solver of the tenant stops,
+     * or is cancelled if the tenant is removed before it started solving;
+     * the solution of a stored result is only read when {@link BestSolutionSnapshot#getSolution()} is called
+     */
+    CompletionStage<BestSolutionSnapshot<Solution_>> getTerminationFuture(Comparable<?> tenantId);
+
+    /**
+     * Does not block: the caller decides how long to wait for the returned stage.
+     * Cancel the returned stage to stop listening before it completes.
+     * @param targetScore null to only complete when the solver stops
+     * @return completes with the first best solution whose score is at least the targetScore,
+     * or with the final best solution when the solver of the tenant stops (or never starts), whichever comes first
+     */
+    CompletionStage<BestSolutionSnapshot<Solution_>> getBestSolutionFuture(Comparable<?> tenantId,
+            Score targetScore);
+
+    /**
+     * Terminates the solver of the tenant if it is still solving and forgets its best solution.
+     */
+    void removeTenant(Comparable<?> tenantId);
 }
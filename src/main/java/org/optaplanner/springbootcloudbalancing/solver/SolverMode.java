@@ -0,0 +1,30 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.optaplanner.springbootcloudbalancing.solver;
+
+public enum SolverMode {
+    /**
+     * Construction heuristic and local search on the whole problem.
+     */
+    LOCAL_SEARCH,
+    /**
+     * Solves capacity-balanced parts of the problem in parallel, then merges them and refines the whole.
+     * Converges faster on very large problems, at the cost of moves across parts during the parallel phase.
+     */
+    PARTITIONED_SEARCH
+}
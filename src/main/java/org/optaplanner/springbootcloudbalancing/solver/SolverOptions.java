@@ -0,0 +1,131 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.optaplanner.springbootcloudbalancing.solver;
+
+/**
+ * How a single submission is solved. Must not be modified after it has been submitted.
+ * The solver stops as soon as any of its limits is reached.
+ * A null time limit gets a default that grows with the size of the problem.
+ */
+public class SolverOptions {
+
+    private int priority = 0;
+    private SolverMode solverMode = SolverMode.LOCAL_SEARCH;
+    private Long millisecondsSpentLimit = null;
+    private Long unimprovedMillisecondsSpentLimit = null;
+    private String bestScoreLimit = null;
+    private Long scoreCalculationCountLimit = null;
+
+    public SolverOptions() {
+    }
+
+    /**
+     * @return queued tenants with a higher priority start solving first
+     */
+    public int getPriority() {
+        return priority;
+    }
+
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+
+    public SolverMode getSolverMode() {
+        return solverMode;
+    }
+
+    public void setSolverMode(SolverMode solverMode) {
+        this.solverMode = solverMode;
+    }
+
+    /**
+     * @return null for the default of the problem size, at most solver.termination.max-milliseconds-spent,
+     * never 0
+     */
+    public Long getMillisecondsSpentLimit() {
+        return millisecondsSpentLimit;
+    }
+
+    public void setMillisecondsSpentLimit(Long millisecondsSpentLimit) {
+        this.millisecondsSpentLimit = millisecondsSpentLimit;
+    }
+
+    /**
+     * @return null for the default of the problem size, the time without a better best solution before it stops,
+     * never 0, kept even if it is not shorter than the {@link #getMillisecondsSpentLimit() time limit}
+     */
+    public Long getUnimprovedMillisecondsSpentLimit() {
+        return unimprovedMillisecondsSpentLimit;
+    }
+
+    public void setUnimprovedMillisecondsSpentLimit(Long unimprovedMillisecondsSpentLimit) {
+        this.unimprovedMillisecondsSpentLimit = unimprovedMillisecondsSpentLimit;
+    }
+
+    /**
+     * @return null to not stop at a score, for example {@code 0hard/-2500soft}
+     */
+    public String getBestScoreLimit() {
+        return bestScoreLimit;
+    }
+
+    public void setBestScoreLimit(String bestScoreLimit) {
+        this.bestScoreLimit = bestScoreLimit;
+    }
+
+    /**
+     * @return null to not stop at a number of score calculations
+     */
+    public Long getScoreCalculationCountLimit() {
+        return scoreCalculationCountLimit;
+    }
+
+    public void setScoreCalculationCountLimit(Long scoreCalculationCountLimit) {
+        this.scoreCalculationCountLimit = scoreCalculationCountLimit;
+    }
+
+    public SolverOptions withPriority(int priority) {
+        this.priority = priority;
+        return this;
+    }
+
+    public SolverOptions withSolverMode(SolverMode solverMode) {
+        this.solverMode = solverMode;
+        return this;
+    }
+
+    public SolverOptions withMillisecondsSpentLimit(Long millisecondsSpentLimit) {
+        this.millisecondsSpentLimit = millisecondsSpentLimit;
+        return this;
+    }
+
+    public SolverOptions withUnimprovedMillisecondsSpentLimit(Long unimprovedMillisecondsSpentLimit) {
+        this.unimprovedMillisecondsSpentLimit = unimprovedMillisecondsSpentLimit;
+        return this;
+    }
+
+    public SolverOptions withBestScoreLimit(String bestScoreLimit) {
+        this.bestScoreLimit = bestScoreLimit;
+        return this;
+    }
+
+    public SolverOptions withScoreCalculationCountLimit(Long scoreCalculationCountLimit) {
+        this.scoreCalculationCountLimit = scoreCalculationCountLimit;
+        return this;
+    }
+}
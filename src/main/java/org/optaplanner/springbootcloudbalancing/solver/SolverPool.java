@@ -0,0 +1,102 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.optaplanner.springbootcloudbalancing.solver;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+import org.optaplanner.core.api.solver.Solver;
+import org.optaplanner.core.impl.solver.DefaultSolver;
+
+/**
+ * Keeps the solvers of stopped tasks, so a task that needs a solver with the same configuration
+ * borrows one instead of building one: that skips allocating its score director factory,
+ * its phases and their selectors.
+ * <p>
+ * The configuration of a solver is fixed once it is built, so a solver is only borrowed for an equal key.
+ * A solver keeps a reference to the best solution of its last problem until it solves again,
+ * so the pool drops that reference when a solver is returned: an idle solver never keeps a tenant's solution.
+ * The pool is bounded: when it is full, the solver that was returned first is dropped.
+ */
+class SolverPool<Solution_> {
+
+    private final int capacity;
+
+    // Guarded by this, the most recently returned solver last
+    private final Deque<PooledSolver<Solution_>> pooledSolverDeque = new ArrayDeque<>();
+
+    /**
+     * @param capacity 0 to never keep a solver
+     */
+    SolverPool(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @param key never null, equal for solvers that are built from equal configurations
+     * @return null if no idle solver has that key, otherwise the most recently returned one
+     */
+    synchronized Solver<Solution_> borrow(Object key) {
+        Iterator<PooledSolver<Solution_>> iterator = pooledSolverDeque.descendingIterator();
+        while (iterator.hasNext()) {
+            PooledSolver<Solution_> pooledSolver = iterator.next();
+            if (pooledSolver.key.equals(key)) {
+                iterator.remove();
+                return pooledSolver.solver;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param key never null, the key it was borrowed with or that it was built for
+     * @param solver never null, not solving and not used by any task
+     */
+    synchronized void giveBack(Object key, Solver<Solution_> solver) {
+        if (capacity <= 0) {
+            return;
+        }
+        if (solver instanceof DefaultSolver) {
+            // The score director already let go of its working solution when the solver stopped
+            ((DefaultSolver<Solution_>) solver).getSolverScope().setBestSolution(null);
+        }
+        if (pooledSolverDeque.size() >= capacity) {
+            pooledSolverDeque.removeFirst();
+        }
+        pooledSolverDeque.addLast(new PooledSolver<>(key, solver));
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized int getIdleSolverCount() {
+        return pooledSolverDeque.size();
+    }
+
+    private static class PooledSolver<Solution_> {
+
+        private final Object key;
+        private final Solver<Solution_> solver;
+
+        private PooledSolver(Object key, Solver<Solution_> solver) {
+            this.key = key;
+            this.solver = solver;
+        }
+    }
+}
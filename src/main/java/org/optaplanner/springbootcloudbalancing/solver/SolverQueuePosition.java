@@ -0,0 +1,48 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.optaplanner.springbootcloudbalancing.solver;
+
+public class SolverQueuePosition {
+
+    private final SolverStatus solverStatus;
+    private final int position;
+    private final Long estimatedWaitMillis;
+
+    public SolverQueuePosition(SolverStatus solverStatus, int position, Long estimatedWaitMillis) {
+        this.solverStatus = solverStatus;
+        this.position = position;
+        this.estimatedWaitMillis = estimatedWaitMillis;
+    }
+
+    public SolverStatus getSolverStatus() {
+        return solverStatus;
+    }
+
+    /**
+     * @return the number of queued tasks that start before this one, 0 if it is not queued anymore
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * @return a rough estimate of the time until this task starts, null if nothing has been solved yet
+     */
+    public Long getEstimatedWaitMillis() {
+        return estimatedWaitMillis;
+    }
+}
@@ -17,6 +17,7 @@
 package org.optaplanner.springbootcloudbalancing.solver;
 
 public enum SolverStatus {
+    QUEUED,
     SOLVING,
     STOPPED,
     TERMINATING_EARLY
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.optaplanner.springbootcloudbalancing.solver;
+
+/**
+ * A planning problem of a tenant, to submit in a batch with {@link SolverManager#solveBatch(java.util.List)}.
+ */
+public class SolverSubmission<Solution_> {
+
+    private final Comparable<?> tenantId;
+    private final Solution_ planningProblem;
+    private final SolverOptions solverOptions;
+
+    /**
+     * @param solverOptions never null, not modified afterwards
+     */
+    public SolverSubmission(Comparable<?> tenantId, Solution_ planningProblem, SolverOptions solverOptions) {
+        this.tenantId = tenantId;
+        this.planningProblem = planningProblem;
+        this.solverOptions = solverOptions;
+    }
+
+    public Comparable<?> getTenantId() {
+        return tenantId;
+    }
+
+    public Solution_ getPlanningProblem() {
+        return planningProblem;
+    }
+
+    public SolverOptions getSolverOptions() {
+        return solverOptions;
+    }
+}
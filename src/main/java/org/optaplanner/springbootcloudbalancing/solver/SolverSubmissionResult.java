@@ -0,0 +1,46 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.optaplanner.springbootcloudbalancing.solver;
+
+public class SolverSubmissionResult {
+
+    private final Comparable<?> tenantId;
+    private final SolverSubmissionStatus status;
+    private final String message;
+
+    public SolverSubmissionResult(Comparable<?> tenantId, SolverSubmissionStatus status, String message) {
+        this.tenantId = tenantId;
+        this.status = status;
+        this.message = message;
+    }
+
+    public Comparable<?> getTenantId() {
+        return tenantId;
+    }
+
+    public SolverSubmissionStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * @return null if the submission was {@link SolverSubmissionStatus#ACCEPTED}
+     */
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.optaplanner.springbootcloudbalancing.solver;
+
+public enum SolverSubmissionStatus {
+    /**
+     * The tenant is queued to be solved.
+     */
+    ACCEPTED,
+    /**
+     * A tenant with the same id already exists, possibly submitted earlier in the same batch.
+     */
+    TENANT_EXISTS,
+    /**
+     * The solverOptions are invalid, for example a negative limit.
+     */
+    INVALID_SOLVER_OPTIONS,
+    /**
+     * The solver queue is full. Retry later.
+     */
+    QUEUE_FULL
+}
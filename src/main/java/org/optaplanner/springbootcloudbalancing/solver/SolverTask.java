@@ -16,8 +16,31 @@
 
 package org.optaplanner.springbootcloudbalancing.solver;
 
-import org.optaplanner.core.api.score.Score;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.optaplanner.core.api.score.FeasibilityScore;
 import org.optaplanner.core.api.solver.Solver;
+import org.optaplanner.core.api.solver.event.BestSolutionChangedEvent;
+import org.optaplanner.core.api.solver.event.SolverEventListener;
+import org.optaplanner.core.impl.phase.event.PhaseLifecycleListener;
+import org.optaplanner.core.impl.phase.event.PhaseLifecycleListenerAdapter;
+import org.optaplanner.core.impl.solver.DefaultSolver;
+import org.optaplanner.core.impl.solver.ProblemFactChange;
+import org.optaplanner.core.impl.solver.scope.DefaultSolverScope;
+import org.optaplanner.springbootcloudbalancing.persistence.SolutionJournalCodec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -26,41 +49,404 @@ public class SolverTask<Solution_> implements Runnable {
     private static final Logger logger = LoggerFactory.getLogger(SolverTask.class);
 
     private final Comparable<?> tenantId;
-    private Solver<Solution_> solver;
-    private Solution_ planningProblem;
+    private final SolverOptions solverOptions;
+    private final long sequenceNumber;
+    private final long submittedTimeMillis;
+    private final Solution_ planningProblem;
+    private final int entityCount;
+    private final ObjectMapper objectMapper;
+    private final SolutionJournalCodec<Solution_> solutionJournalCodec;
+    private final Executor historyCompactionExecutor;
+
+    // Null until the task starts, because its move thread count depends on the load at that time.
+    // With partitioned search, the move threads run parts instead.
+    // Null again once it is released, because then another task can reuse it.
+    private volatile Solver<Solution_> solver = null;
+    private final SolverEventListener<Solution_> bestSolutionEventListener = this::publishBestSolution;
+    // Solver.solve() forgets a terminateEarly() that came before it started, so it is repeated once it has started
+    private final PhaseLifecycleListener<Solution_> solvingStartedListener
+            = new PhaseLifecycleListenerAdapter<Solution_>() {
+        @Override
+        public void solvingStarted(DefaultSolverScope<Solution_> solverScope) {
+            if (terminateEarlyRequested) {
+                terminateEarly();
+            }
+        }
+    };
+    private volatile int moveThreadCount = -1;
+    // Guarded by this, the changes that arrive before the solver is built
+    private final List<ProblemFactChange<Solution_>> pendingProblemFactChangeList = new ArrayList<>();
+    private volatile boolean terminateEarlyRequested = false;
 
-    public SolverTask(Comparable<?> tenantId, Solver<Solution_> solver, Solution_ planningProblem) {
+    // Only written by the solver thread, right before it applies a problem fact change
+    private volatile long problemVersion = 0L;
+    private volatile BestSolutionSnapshot<Solution_> bestSolutionSnapshot;
+    // Ring buffer of the recent best solutions, indexed by version modulo its length.
+    // The older versions are replaced by their assignments off the solver thread.
+    private final AtomicReferenceArray<BestSolutionSnapshot<Solution_>> bestSolutionHistory;
+    private final AtomicBoolean historyCompactionScheduled = new AtomicBoolean(false);
+    private volatile long startedTimeMillis = -1L;
+    private volatile long stoppedTimeMillis = -1L;
+    private volatile long firstFeasibleTimeMillis = -1L;
+    // Only set when the solver stops, while solving it is read from the solver
+    private volatile long scoreCalculationCount = -1L;
+
+    // The solver does not support adding listeners while it is solving, so it only has a single one that fans out
+    private final Set<Consumer<BestSolutionSnapshot<Solution_>>> bestSolutionListenerSet = new CopyOnWriteArraySet<>();
+    private final CompletableFuture<Solution_> terminationFuture = new CompletableFuture<>();
+    // Unlike the dependents of the termination future, a waiter that gives up can be removed again
+    private final Set<BiConsumer<? super Solution_, ? super Throwable>> terminationListenerSet
+            = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param solverOptions a higher priority is started sooner
+     * @param sequenceNumber unique per {@link SolverManager}, lower is started sooner among tasks with the same priority
+     * @param entityCount the size of the planning problem
+     * @param objectMapper serializes a best solution once, when its JSON is first read
+     * @param solutionJournalCodec writes the assignments of a best solution once it is no longer the current one
+     * @param historyCompactionExecutor writes those assignments, so the solver thread does not
+     * @param bestSolutionHistorySize at least 1, the number of recent best solutions to remember
+     */
+    public SolverTask(Comparable<?> tenantId, SolverOptions solverOptions, long sequenceNumber,
+            Solution_ planningProblem, int entityCount, ObjectMapper objectMapper,
+            SolutionJournalCodec<Solution_> solutionJournalCodec, Executor historyCompactionExecutor,
+            int bestSolutionHistorySize) {
         this.tenantId = tenantId;
-        this.solver = solver;
+        this.solverOptions = solverOptions;
+        this.sequenceNumber = sequenceNumber;
+        this.submittedTimeMillis = System.currentTimeMillis();
         this.planningProblem = planningProblem;
+        this.entityCount = entityCount;
+        this.objectMapper = objectMapper;
+        this.solutionJournalCodec = solutionJournalCodec;
+        this.historyCompactionExecutor = historyCompactionExecutor;
+        bestSolutionHistory = new AtomicReferenceArray<>(bestSolutionHistorySize);
+        terminationFuture.whenComplete(this::notifyTerminationListeners);
+        publishSnapshot(new BestSolutionSnapshot<>(sequenceNumber, 0L, 0L, planningProblem, null, objectMapper));
+    }
+
+    /**
+     * Called by the worker thread right before {@link #run()}.
+     * If it is not called, {@link #run()} stops without solving.
+     * @param moveThreadCount 0 if the solver has no move threads
+     */
+    public synchronized void startSolver(Solver<Solution_> solver, int moveThreadCount) {
+        solver.addEventListener(bestSolutionEventListener);
+        if (solver instanceof DefaultSolver) {
+            ((DefaultSolver<Solution_>) solver).addPhaseLifecycleListener(solvingStartedListener);
+        }
+        if (!pendingProblemFactChangeList.isEmpty()) {
+            solver.addProblemFactChanges(pendingProblemFactChangeList);
+            pendingProblemFactChangeList.clear();
+        }
+        this.moveThreadCount = moveThreadCount;
+        this.solver = solver;
     }
 
     @Override
     public void run() {
-        logger.info("Running solverTask for tenantId ({}).", tenantId);
-        solver.solve(planningProblem);
+        if (solver == null || terminateEarlyRequested) {
+            logger.info("Not solving solverTask for tenantId ({}) because it was terminated before it started.",
+                    tenantId);
+            // Stopped first, so it is never seen as solving without a solver
+            stoppedTimeMillis = System.currentTimeMillis();
+            startedTimeMillis = stoppedTimeMillis;
+            terminationFuture.complete(planningProblem);
+            return;
+        }
+        startedTimeMillis = System.currentTimeMillis();
+        logger.info("Running solverTask for tenantId ({}) with solverMode ({}) and {} move threads.",
+                tenantId, solverOptions.getSolverMode(), moveThreadCount);
+        Solution_ bestSolution;
+        try {
+            bestSolution = solver.solve(planningProblem);
+        } catch (RuntimeException | Error e) {
+            scoreCalculationCount = getScoreCalculationCount();
+            stoppedTimeMillis = System.currentTimeMillis();
+            terminationFuture.completeExceptionally(e);
+            throw e;
+        }
+        scoreCalculationCount = getScoreCalculationCount();
+        stoppedTimeMillis = System.currentTimeMillis();
+        terminationFuture.complete(bestSolution);
+    }
+
+    /**
+     * Called by the worker thread after {@link #run()}.
+     * Afterwards this task no longer reaches the solver, so another task can reuse it.
+     * @return null if the solver should not be reused: it never started, it failed
+     * or it has problem fact changes that it did not process
+     */
+    public synchronized Solver<Solution_> releaseSolver() {
+        Solver<Solution_> releasedSolver = solver;
+        if (releasedSolver == null) {
+            return null;
+        }
+        solver = null;
+        releasedSolver.removeEventListener(bestSolutionEventListener);
+        if (releasedSolver instanceof DefaultSolver) {
+            ((DefaultSolver<Solution_>) releasedSolver).removePhaseLifecycleListener(solvingStartedListener);
+        }
+        if (terminationFuture.isCompletedExceptionally() || !releasedSolver.isEveryProblemFactChangeProcessed()) {
+            return null;
+        }
+        return releasedSolver;
+    }
+
+    /**
+     * Also works when it comes after {@link #run()} checked for it but before the solver started,
+     * because then the solver repeats it once it has started.
+     * Synchronized with {@link #releaseSolver()}, so it never terminates a solver that another task reuses.
+     */
+    public synchronized void terminateEarly() {
+        terminateEarlyRequested = true;
+        if (solver != null) {
+            solver.terminateEarly();
+        }
+    }
+
+    /**
+     * Changes that arrive before the solver starts are applied when it starts.
+     * @throws TenantNotSolvingException if the solver stopped before it could apply the changes
+     */
+    public synchronized void addProblemFactChanges(List<ProblemFactChange<Solution_>> problemFactChangeList) {
+        if (stoppedTimeMillis >= 0L) {
+            throw new TenantNotSolvingException(tenantId);
+        }
+        List<ProblemFactChange<Solution_>> versionedProblemFactChangeList
+                = new ArrayList<>(problemFactChangeList.size());
+        for (ProblemFactChange<Solution_> problemFactChange : problemFactChangeList) {
+            versionedProblemFactChangeList.add(scoreDirector -> {
+                // Before the change, so an older version is never compared against a partly changed problem
+                problemVersion++;
+                problemFactChange.doChange(scoreDirector);
+            });
+        }
+        if (solver == null) {
+            pendingProblemFactChangeList.addAll(versionedProblemFactChangeList);
+            return;
+        }
+        solver.addProblemFactChanges(versionedProblemFactChangeList);
+        if (stoppedTimeMillis >= 0L && !solver.isEveryProblemFactChangeProcessed()) {
+            throw new TenantNotSolvingException(tenantId);
+        }
+    }
+
+    /**
+     * Called instead of {@link #run()} when the task is removed before it started.
+     */
+    public void cancel() {
+        terminationFuture.cancel(false);
+    }
+
+    public void addBestSolutionListener(Consumer<BestSolutionSnapshot<Solution_>> bestSolutionListener) {
+        bestSolutionListenerSet.add(bestSolutionListener);
+    }
+
+    public void removeBestSolutionListener(Consumer<BestSolutionSnapshot<Solution_>> bestSolutionListener) {
+        bestSolutionListenerSet.remove(bestSolutionListener);
+    }
+
+    /**
+     * Calls the terminationListener once, like {@link CompletableFuture#whenComplete(BiConsumer)} would,
+     * when the solver stops or the task is cancelled, or right away if that already happened.
+     * @param terminationListener remove it with {@link #removeTerminationListener(BiConsumer)} to stop waiting
+     */
+    public void addTerminationListener(BiConsumer<? super Solution_, ? super Throwable> terminationListener) {
+        terminationListenerSet.add(terminationListener);
+        // The listeners can be notified before it was added
+        if (terminationFuture.isDone() && terminationListenerSet.remove(terminationListener)) {
+            terminationFuture.whenComplete(terminationListener);
+        }
+    }
+
+    public void removeTerminationListener(BiConsumer<? super Solution_, ? super Throwable> terminationListener) {
+        terminationListenerSet.remove(terminationListener);
+    }
+
+    private void notifyTerminationListeners(Solution_ bestSolution, Throwable throwable) {
+        for (BiConsumer<? super Solution_, ? super Throwable> terminationListener : terminationListenerSet) {
+            // Unless addTerminationListener() already called it
+            if (terminationListenerSet.remove(terminationListener)) {
+                terminationListener.accept(bestSolution, throwable);
+            }
+        }
+    }
+
+    private void publishBestSolution(BestSolutionChangedEvent<Solution_> event) {
+        if (firstFeasibleTimeMillis < 0L && event.getNewBestScore() instanceof FeasibilityScore
+                && ((FeasibilityScore) event.getNewBestScore()).isFeasible()) {
+            firstFeasibleTimeMillis = System.currentTimeMillis();
+        }
+        BestSolutionSnapshot<Solution_> newBestSolutionSnapshot = new BestSolutionSnapshot<>(sequenceNumber,
+                bestSolutionSnapshot.getVersion() + 1L, problemVersion, event.getNewBestSolution(),
+                event.getNewBestScore(), objectMapper);
+        publishSnapshot(newBestSolutionSnapshot);
+        for (Consumer<BestSolutionSnapshot<Solution_>> bestSolutionListener : bestSolutionListenerSet) {
+            bestSolutionListener.accept(newBestSolutionSnapshot);
+        }
+    }
+
+    /**
+     * Only publishes references, because it runs on the solver thread for every new best solution.
+     */
+    private void publishSnapshot(BestSolutionSnapshot<Solution_> newBestSolutionSnapshot) {
+        bestSolutionHistory.set(historyIndex(newBestSolutionSnapshot.getVersion()), newBestSolutionSnapshot);
+        bestSolutionSnapshot = newBestSolutionSnapshot;
+        if (newBestSolutionSnapshot.getVersion() > 0L && historyCompactionScheduled.compareAndSet(false, true)) {
+            try {
+                historyCompactionExecutor.execute(this::compactHistory);
+            } catch (RejectedExecutionException e) {
+                // Shutting down, the older versions keep their solution instead
+                historyCompactionScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Replaces every older version in the history by its assignments, so it no longer retains its solution.
+     * Coalesced: one run compacts all the versions published since the previous run.
+     */
+    private void compactHistory() {
+        historyCompactionScheduled.set(false);
+        BestSolutionSnapshot<Solution_> currentSnapshot = bestSolutionSnapshot;
+        for (int i = 0; i < bestSolutionHistory.length(); i++) {
+            BestSolutionSnapshot<Solution_> historicSnapshot = bestSolutionHistory.get(i);
+            if (historicSnapshot != null && historicSnapshot != currentSnapshot) {
+                compactHistoricSnapshot(i, historicSnapshot);
+            }
+        }
+    }
+
+    private BestSolutionSnapshot<Solution_> compactHistoricSnapshot(int index,
+            BestSolutionSnapshot<Solution_> historicSnapshot) {
+        if (historicSnapshot.getAssignments() != null) {
+            return historicSnapshot;
+        }
+        BestSolutionSnapshot<Solution_> compactedSnapshot = historicSnapshot.withAssignmentsOnly(
+                solutionJournalCodec.writeAssignments(historicSnapshot.getSolution()));
+        // Unless a newer version took its place meanwhile
+        bestSolutionHistory.compareAndSet(index, historicSnapshot, compactedSnapshot);
+        return compactedSnapshot;
+    }
+
+    private int historyIndex(long version) {
+        return (int) (version % bestSolutionHistory.length());
+    }
+
+    /**
+     * @return completes with the best solution when the solver stops, or is cancelled if it never started
+     */
+    public CompletionStage<Solution_> getTerminationFuture() {
+        return terminationFuture;
     }
 
     public Comparable<?> getTenantId() {
         return tenantId;
     }
 
-    public Solution_ getBestSolution() {
-        return solver.getBestSolution();
+    public SolverOptions getSolverOptions() {
+        return solverOptions;
+    }
+
+    public int getPriority() {
+        return solverOptions.getPriority();
+    }
+
+    public long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    public int getEntityCount() {
+        return entityCount;
+    }
+
+    /**
+     * @return -1 if the solver has not been started
+     */
+    public int getMoveThreadCount() {
+        return moveThreadCount;
     }
 
-    public Score getBestScore() {
-        return solver.getBestScore();
+    public long getSubmittedTimeMillis() {
+        return submittedTimeMillis;
+    }
+
+    /**
+     * @return -1 if the solver has not started yet
+     */
+    public long getStartedTimeMillis() {
+        return startedTimeMillis;
+    }
+
+    /**
+     * @return -1 if the solver has not stopped yet
+     */
+    public long getStoppedTimeMillis() {
+        return stoppedTimeMillis;
+    }
+
+    /**
+     * @return -1 if the solver has not found a feasible solution yet
+     */
+    public long getFirstFeasibleTimeMillis() {
+        return firstFeasibleTimeMillis;
+    }
+
+    /**
+     * Includes the score calculations of the move threads and of the parts of a partitioned search.
+     * @return 0 if the solver has not started solving yet
+     */
+    public long getScoreCalculationCount() {
+        if (scoreCalculationCount >= 0L) {
+            return scoreCalculationCount;
+        }
+        Solver<Solution_> solver = this.solver;
+        if (!(solver instanceof DefaultSolver)) {
+            return 0L;
+        }
+        DefaultSolverScope<Solution_> solverScope = ((DefaultSolver<Solution_>) solver).getSolverScope();
+        // Null until solve() has started
+        return solverScope.getScoreDirector() == null ? 0L : solverScope.getScoreCalculationCount();
+    }
+
+    public BestSolutionSnapshot<Solution_> getBestSolutionSnapshot() {
+        return bestSolutionSnapshot;
+    }
+
+    /**
+     * @return null if that version is unknown or no longer remembered, or if a problem fact change happened since;
+     * only the current version has its solution and JSON, an older one only has its assignments,
+     * written here if that has not happened yet
+     */
+    public BestSolutionSnapshot<Solution_> getBestSolutionSnapshot(long version) {
+        BestSolutionSnapshot<Solution_> currentSnapshot = bestSolutionSnapshot;
+        if (currentSnapshot.getVersion() == version) {
+            return currentSnapshot;
+        } else if (version < 0L) {
+            return null;
+        }
+        int index = historyIndex(version);
+        BestSolutionSnapshot<Solution_> historicSnapshot = bestSolutionHistory.get(index);
+        // The assignments of an older problem cannot be compared against the current solution
+        if (historicSnapshot == null || historicSnapshot.getVersion() != version
+                || historicSnapshot.getProblemVersion() != currentSnapshot.getProblemVersion()) {
+            return null;
+        }
+        return compactHistoricSnapshot(index, historicSnapshot);
     }
 
     public SolverStatus getSolverStatus() {
-        if (solver.isTerminateEarly()) {
+        if (stoppedTimeMillis >= 0L) {
+            return SolverStatus.STOPPED;
+        } else if (startedTimeMillis < 0L) {
+            return SolverStatus.QUEUED;
+        }
+        Solver<Solution_> solver = this.solver;
+        if (terminateEarlyRequested || (solver != null && solver.isTerminateEarly())) {
             return SolverStatus.TERMINATING_EARLY;
-        } else if (solver.isSolving()) {
-            return SolverStatus.SOLVING;
         } else {
-            return SolverStatus.STOPPED;
+            return SolverStatus.SOLVING;
         }
     }
 }
-
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.optaplanner.springbootcloudbalancing.solver;
+
+import java.util.Comparator;
+import java.util.concurrent.PriorityBlockingQueue;
+
+/**
+ * Work queue of the solver executor: orders {@link SolverTask}s by priority and then by submission,
+ * and refuses new tasks once it holds {@link #getCapacity()} tasks.
+ */
+class SolverTaskQueue extends PriorityBlockingQueue<Runnable> {
+
+    static final Comparator<SolverTask<?>> SOLVER_TASK_COMPARATOR = Comparator
+            .comparingInt((SolverTask<?> solverTask) -> solverTask.getPriority()).reversed()
+            .thenComparingLong(SolverTask::getSequenceNumber);
+
+    private final int capacity;
+
+    SolverTaskQueue(int capacity) {
+        super(11, (a, b) -> SOLVER_TASK_COMPARATOR.compare((SolverTask<?>) a, (SolverTask<?>) b));
+        this.capacity = capacity;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public synchronized boolean offer(Runnable runnable) {
+        if (size() >= capacity) {
+            return false;
+        }
+        return super.offer(runnable);
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Math.max(0, capacity - size());
+    }
+
+    /**
+     * @return the number of queued tasks that start before the given task, -1 if it is not queued
+     */
+    public int positionOf(SolverTask<?> solverTask) {
+        boolean queued = false;
+        int position = 0;
+        for (Object queuedTask : toArray()) {
+            if (queuedTask == solverTask) {
+                queued = true;
+            } else if (SOLVER_TASK_COMPARATOR.compare((SolverTask<?>) queuedTask, solverTask) < 0) {
+                position++;
+            }
+        }
+        return queued ? position : -1;
+    }
+}
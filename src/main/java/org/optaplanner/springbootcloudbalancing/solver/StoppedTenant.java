@@ -0,0 +1,78 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.optaplanner.springbootcloudbalancing.solver;
+
+import org.optaplanner.core.api.score.Score;
+import org.optaplanner.springbootcloudbalancing.persistence.SolverResultStore;
+import org.optaplanner.springbootcloudbalancing.persistence.StoredSolverResult;
+
+/**
+ * A tenant that stopped solving, whose best solution moved to the {@link SolverResultStore}.
+ * It replaces the {@link SolverTask} of the tenant, so only this small entry stays on the heap.
+ */
+class StoppedTenant<Solution_> {
+
+    private final Comparable<?> tenantId;
+    private final long sequenceNumber;
+    private final long version;
+    private final Score score;
+    private final long stoppedTimeMillis;
+    private final StoredSolverResult storedResult;
+
+    StoppedTenant(Comparable<?> tenantId, long sequenceNumber, long version, Score score, long stoppedTimeMillis,
+            StoredSolverResult storedResult) {
+        this.tenantId = tenantId;
+        this.sequenceNumber = sequenceNumber;
+        this.version = version;
+        this.score = score;
+        this.stoppedTimeMillis = stoppedTimeMillis;
+        this.storedResult = storedResult;
+    }
+
+    Comparable<?> getTenantId() {
+        return tenantId;
+    }
+
+    /**
+     * @return the sequence number of the solver task that it replaced
+     */
+    long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    /**
+     * @return the version of the final best solution
+     */
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return null if the submitted problem was never scored
+     */
+    Score getScore() {
+        return score;
+    }
+
+    long getStoppedTimeMillis() {
+        return stoppedTimeMillis;
+    }
+
+    StoredSolverResult getStoredResult() {
+        return storedResult;
+    }
+}
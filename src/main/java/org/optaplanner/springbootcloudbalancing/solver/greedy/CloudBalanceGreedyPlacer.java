@@ -0,0 +1,91 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.optaplanner.springbootcloudbalancing.solver.greedy;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.optaplanner.core.api.score.buildin.hardsoft.HardSoftScore;
+import org.optaplanner.springbootcloudbalancing.domain.CloudBalance;
+import org.optaplanner.springbootcloudbalancing.domain.CloudComputer;
+import org.optaplanner.springbootcloudbalancing.domain.CloudProcess;
+
+/**
+ * Assigns the unassigned processes of a {@link CloudBalance} with best fit decreasing, without a solver:
+ * the largest process first, each to the computer that {@link CloudComputerCapacityIndex} finds for it.
+ * Never overloads a computer, so a process that fits nowhere stays unassigned.
+ * <p>
+ * The result is a quick answer and a good starting point, the solver can still improve on it.
+ */
+public class CloudBalanceGreedyPlacer {
+
+    private static final Comparator<CloudProcess> DECREASING_DEMAND_COMPARATOR = Comparator
+            .comparingInt(CloudProcess::getRequiredMultiplicand)
+            .thenComparingInt(CloudProcess::getRequiredCpuPower)
+            .thenComparingLong(CloudProcess::getId)
+            .reversed();
+
+    /**
+     * Keeps the assigned processes where they are and sets the score,
+     * which is uninitialized by the number of processes that fit nowhere.
+     * @param cloudBalance never null, modified
+     */
+    public void place(CloudBalance cloudBalance) {
+        List<CloudProcess> processList = cloudBalance.getProcessList();
+        CloudComputerCapacityIndex capacityIndex = new CloudComputerCapacityIndex(cloudBalance.getComputerList(),
+                processList);
+        List<CloudProcess> unassignedProcessList = new ArrayList<>();
+        for (CloudProcess process : processList) {
+            if (process.getComputer() == null) {
+                unassignedProcessList.add(process);
+            }
+        }
+        unassignedProcessList.sort(DECREASING_DEMAND_COMPARATOR);
+        int unplacedCount = 0;
+        // The last process that fit on no used computer, and the number of used computers at that time
+        CloudProcess missedProcess = null;
+        int missedUsedComputerCount = 0;
+        for (CloudProcess process : unassignedProcessList) {
+            // Used computers only lose capacity, so those that lacked it for the missed process
+            // still lack it for a process that requires at least as much of everything
+            int fromUsedComputerOrdinal = missedProcess != null && requiresAtLeast(process, missedProcess)
+                    ? missedUsedComputerCount : 0;
+            CloudComputer computer = capacityIndex.findUsedComputer(process, fromUsedComputerOrdinal);
+            if (computer == null) {
+                missedProcess = process;
+                missedUsedComputerCount = capacityIndex.getUsedComputerCount();
+                computer = capacityIndex.findUnusedComputer(process);
+            }
+            if (computer == null) {
+                unplacedCount++;
+            } else {
+                capacityIndex.assign(process, computer);
+                process.setComputer(computer);
+            }
+        }
+        cloudBalance.setScore(HardSoftScore.ofUninitialized(-unplacedCount, capacityIndex.getOverloadedCapacity(),
+                (int) -capacityIndex.getUsedComputerCost()));
+    }
+
+    private static boolean requiresAtLeast(CloudProcess process, CloudProcess otherProcess) {
+        return process.getRequiredCpuPower() >= otherProcess.getRequiredCpuPower()
+                && process.getRequiredMemory() >= otherProcess.getRequiredMemory()
+                && process.getRequiredNetworkBandwidth() >= otherProcess.getRequiredNetworkBandwidth();
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.optaplanner.springbootcloudbalancing.solver.greedy;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.optaplanner.springbootcloudbalancing.domain.CloudComputer;
+import org.optaplanner.springbootcloudbalancing.domain.CloudProcess;
+
+/**
+ * Finds a computer for a process without a solver, in logarithmic time for typical problems.
+ * <p>
+ * The used computers are the leaves of a tree, in the order they were first used,
+ * and every node holds the maximum remaining cpu power, memory and network bandwidth below it.
+ * So a used computer that fits a process is found by descending only into the subtrees
+ * that might fit it, instead of scanning every computer.
+ * The most recently used computers are tried first, because they have the most remaining capacity.
+ * A process only goes to an unused computer if no used computer fits it, because that adds the cost
+ * of that computer. The unused computers are grouped by machine type, so only the types are scanned.
+ * <p>
+ * Finding a computer does not modify the index, so a built index can be queried concurrently.
+ * Assigning a process does modify it.
+ */
+public class CloudComputerCapacityIndex {
+
+    // Below every remaining capacity, so a leaf without a used computer never fits
+    private static final int NO_COMPUTER = Integer.MIN_VALUE;
+
+    private final int leafCount;
+    private final CloudComputer[] usedComputers;
+    // Heap ordered: the children of node i are 2i and 2i + 1, leaf j is node leafCount + j
+    private final int[] maxRemainingCpuPower;
+    private final int[] maxRemainingMemory;
+    private final int[] maxRemainingNetworkBandwidth;
+    private int usedComputerCount = 0;
+    private final Map<CloudComputer, Integer> usedComputerToLeafMap;
+    private final Map<MachineType, MachineType> unusedMachineTypeMap = new HashMap<>();
+    // Cheapest per unit of capacity first
+    private final List<MachineType> unusedMachineTypeList;
+    private long usedComputerCost = 0L;
+
+    /**
+     * @param computerList never null, not modified
+     * @param processList never null, not modified, the assigned processes are the initial load of their computer
+     */
+    public CloudComputerCapacityIndex(List<CloudComputer> computerList, List<CloudProcess> processList) {
+        leafCount = Integer.highestOneBit(Math.max(1, computerList.size() * 2 - 1));
+        usedComputers = new CloudComputer[leafCount];
+        maxRemainingCpuPower = new int[leafCount * 2];
+        maxRemainingMemory = new int[leafCount * 2];
+        maxRemainingNetworkBandwidth = new int[leafCount * 2];
+        Arrays.fill(maxRemainingCpuPower, NO_COMPUTER);
+        Arrays.fill(maxRemainingMemory, NO_COMPUTER);
+        Arrays.fill(maxRemainingNetworkBandwidth, NO_COMPUTER);
+        usedComputerToLeafMap = new HashMap<>(computerList.size() * 2);
+
+        Map<CloudComputer, int[]> computerToLoadMap = new HashMap<>(computerList.size() * 2);
+        long totalCpuPower = 1L;
+        long totalMemory = 1L;
+        long totalNetworkBandwidth = 1L;
+        for (CloudComputer computer : computerList) {
+            computerToLoadMap.put(computer, null);
+            totalCpuPower += computer.getCpuPower();
+            totalMemory += computer.getMemory();
+            totalNetworkBandwidth += computer.getNetworkBandwidth();
+        }
+        for (CloudProcess process : processList) {
+            CloudComputer computer = process.getComputer();
+            if (computer != null) {
+                if (!computerToLoadMap.containsKey(computer)) {
+                    throw new IllegalArgumentException("The process (" + process + ") has a computer (" + computer
+                            + ") that is not in the computerList.");
+                }
+                int[] load = computerToLoadMap.computeIfAbsent(computer, key -> new int[3]);
+                load[0] += process.getRequiredCpuPower();
+                load[1] += process.getRequiredMemory();
+                load[2] += process.getRequiredNetworkBandwidth();
+            }
+        }
+        for (CloudComputer computer : computerList) {
+            int[] load = computerToLoadMap.get(computer);
+            if (load == null) {
+                MachineType machineType = unusedMachineTypeMap.computeIfAbsent(new MachineType(computer), key -> key);
+                machineType.unusedComputerDeque.add(computer);
+            } else {
+                int leaf = use(computer);
+                updateLeaf(leaf, computer.getCpuPower() - load[0], computer.getMemory() - load[1],
+                        computer.getNetworkBandwidth() - load[2]);
+            }
+        }
+
+        double cpuPowerWeight = 1.0 / totalCpuPower;
+        double memoryWeight = 1.0 / totalMemory;
+        double networkBandwidthWeight = 1.0 / totalNetworkBandwidth;
+        unusedMachineTypeList = new ArrayList<>(unusedMachineTypeMap.keySet());
+        unusedMachineTypeList.sort(Comparator.comparingDouble((MachineType machineType) -> machineType.cost
+                / (machineType.cpuPower * cpuPowerWeight + machineType.memory * memoryWeight
+                + machineType.networkBandwidth * networkBandwidthWeight + Double.MIN_VALUE))
+                .thenComparingInt(machineType -> machineType.cost));
+    }
+
+    /**
+     * Does not modify this index.
+     * @param process never null, its computer is ignored
+     * @return null if no computer has enough remaining capacity,
+     * otherwise the most recently used computer that fits or else the cheapest unused computer per unit of capacity
+     */
+    public CloudComputer findComputer(CloudProcess process) {
+        CloudComputer computer = findUsedComputer(process, 0);
+        return computer != null ? computer : findUnusedComputer(process);
+    }
+
+    /**
+     * Does not modify this index.
+     * @param fromUsedComputerOrdinal only considers the computers that were used after this many others,
+     * 0 considers every used computer
+     * @return null if no used computer has enough remaining capacity, otherwise the most recently used one that does
+     */
+    public CloudComputer findUsedComputer(CloudProcess process, int fromUsedComputerOrdinal) {
+        int leaf = findLeaf(1, 0, leafCount, fromUsedComputerOrdinal, process.getRequiredCpuPower(),
+                process.getRequiredMemory(), process.getRequiredNetworkBandwidth());
+        return leaf >= 0 ? usedComputers[leaf] : null;
+    }
+
+    /**
+     * Does not modify this index.
+     * @return null if no unused computer has enough capacity, otherwise the cheapest one per unit of capacity
+     */
+    public CloudComputer findUnusedComputer(CloudProcess process) {
+        int requiredCpuPower = process.getRequiredCpuPower();
+        int requiredMemory = process.getRequiredMemory();
+        int requiredNetworkBandwidth = process.getRequiredNetworkBandwidth();
+        for (MachineType machineType : unusedMachineTypeList) {
+            if (!machineType.unusedComputerDeque.isEmpty() && machineType.cpuPower >= requiredCpuPower
+                    && machineType.memory >= requiredMemory
+                    && machineType.networkBandwidth >= requiredNetworkBandwidth) {
+                return machineType.unusedComputerDeque.peekFirst();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param fromLeaf the leaves before it are skipped
+     * @return -1 if no leaf below the node, which covers the leaves from leafStart until leafEnd, fits
+     */
+    private int findLeaf(int node, int leafStart, int leafEnd, int fromLeaf,
+            int requiredCpuPower, int requiredMemory, int requiredNetworkBandwidth) {
+        if (leafEnd <= fromLeaf || maxRemainingCpuPower[node] < requiredCpuPower
+                || maxRemainingMemory[node] < requiredMemory
+                || maxRemainingNetworkBandwidth[node] < requiredNetworkBandwidth) {
+            return -1;
+        }
+        if (node >= leafCount) {
+            return node - leafCount;
+        }
+        // The maximums of a node can come from different leaves, so a child might not fit after all
+        int leafMiddle = (leafStart + leafEnd) / 2;
+        int leaf = findLeaf(node * 2 + 1, leafMiddle, leafEnd, fromLeaf,
+                requiredCpuPower, requiredMemory, requiredNetworkBandwidth);
+        return leaf >= 0 ? leaf : findLeaf(node * 2, leafStart, leafMiddle, fromLeaf,
+                requiredCpuPower, requiredMemory, requiredNetworkBandwidth);
+    }
+
+    /**
+     * Adds the process to the load of the computer, even if it does not fit.
+     * Does not set the computer of the process.
+     * @param computer never null, in the computerList of this index
+     */
+    public void assign(CloudProcess process, CloudComputer computer) {
+        Integer leaf = usedComputerToLeafMap.get(computer);
+        int node;
+        if (leaf == null) {
+            MachineType machineType = unusedMachineTypeMap.get(new MachineType(computer));
+            if (machineType == null || !machineType.unusedComputerDeque.remove(computer)) {
+                throw new IllegalArgumentException("The computer (" + computer + ") is not in this index.");
+            }
+            node = leafCount + use(computer);
+            maxRemainingCpuPower[node] = computer.getCpuPower();
+            maxRemainingMemory[node] = computer.getMemory();
+            maxRemainingNetworkBandwidth[node] = computer.getNetworkBandwidth();
+        } else {
+            node = leafCount + leaf;
+        }
+        updateLeaf(node - leafCount, maxRemainingCpuPower[node] - process.getRequiredCpuPower(),
+                maxRemainingMemory[node] - process.getRequiredMemory(),
+                maxRemainingNetworkBandwidth[node] - process.getRequiredNetworkBandwidth());
+    }
+
+    private int use(CloudComputer computer) {
+        int leaf = usedComputerCount++;
+        usedComputers[leaf] = computer;
+        usedComputerToLeafMap.put(computer, leaf);
+        usedComputerCost += computer.getCost();
+        return leaf;
+    }
+
+    private void updateLeaf(int leaf, int remainingCpuPower, int remainingMemory, int remainingNetworkBandwidth) {
+        int node = leafCount + leaf;
+        maxRemainingCpuPower[node] = remainingCpuPower;
+        maxRemainingMemory[node] = remainingMemory;
+        maxRemainingNetworkBandwidth[node] = remainingNetworkBandwidth;
+        for (node /= 2; node >= 1; node /= 2) {
+            maxRemainingCpuPower[node] = Math.max(maxRemainingCpuPower[node * 2],
+                    maxRemainingCpuPower[node * 2 + 1]);
+            maxRemainingMemory[node] = Math.max(maxRemainingMemory[node * 2], maxRemainingMemory[node * 2 + 1]);
+            maxRemainingNetworkBandwidth[node] = Math.max(maxRemainingNetworkBandwidth[node * 2],
+                    maxRemainingNetworkBandwidth[node * 2 + 1]);
+        }
+    }
+
+    /**
+     * @return the number of computers that have at least one process
+     */
+    public int getUsedComputerCount() {
+        return usedComputerCount;
+    }
+
+    /**
+     * @return the total cost of the computers that have at least one process
+     */
+    public long getUsedComputerCost() {
+        return usedComputerCost;
+    }
+
+    /**
+     * Only the initial load can overload a computer, because {@link #findComputer(CloudProcess)} never does.
+     * @return zero or negative, the capacity that the used computers lack, as in the hard score
+     */
+    public int getOverloadedCapacity() {
+        int overloadedCapacity = 0;
+        for (int node = leafCount; node < leafCount + usedComputerCount; node++) {
+            overloadedCapacity += Math.min(0, maxRemainingCpuPower[node]) + Math.min(0, maxRemainingMemory[node])
+                    + Math.min(0, maxRemainingNetworkBandwidth[node]);
+        }
+        return overloadedCapacity;
+    }
+
+    private static class MachineType {
+
+        private final int cpuPower;
+        private final int memory;
+        private final int networkBandwidth;
+        private final int cost;
+        private final Deque<CloudComputer> unusedComputerDeque = new ArrayDeque<>();
+
+        private MachineType(CloudComputer computer) {
+            cpuPower = computer.getCpuPower();
+            memory = computer.getMemory();
+            networkBandwidth = computer.getNetworkBandwidth();
+            cost = computer.getCost();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            } else if (!(o instanceof MachineType)) {
+                return false;
+            }
+            MachineType other = (MachineType) o;
+            return cpuPower == other.cpuPower && memory == other.memory
+                    && networkBandwidth == other.networkBandwidth && cost == other.cost;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(cpuPower, memory, networkBandwidth, cost);
+        }
+    }
+}
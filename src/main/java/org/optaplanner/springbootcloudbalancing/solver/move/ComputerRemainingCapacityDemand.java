@@ -0,0 +1,72 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.optaplanner.springbootcloudbalancing.solver.move;
+
+import org.optaplanner.core.impl.domain.variable.descriptor.VariableDescriptor;
+import org.optaplanner.core.impl.domain.variable.supply.Demand;
+import org.optaplanner.core.impl.domain.variable.supply.SupplyManager;
+import org.optaplanner.core.impl.score.director.InnerScoreDirector;
+import org.optaplanner.core.impl.score.director.ScoreDirector;
+import org.optaplanner.springbootcloudbalancing.domain.CloudProcess;
+
+/**
+ * Equal for every score director, so the {@link SupplyManager} of a score director
+ * creates one {@link ComputerRemainingCapacitySupply} and then returns that one.
+ */
+public class ComputerRemainingCapacityDemand implements Demand<ComputerRemainingCapacitySupply> {
+
+    private static final int CLASS_NAME_HASH_CODE = ComputerRemainingCapacityDemand.class.getName().hashCode() * 37;
+
+    private final VariableDescriptor sourceVariableDescriptor;
+
+    public ComputerRemainingCapacityDemand(VariableDescriptor sourceVariableDescriptor) {
+        this.sourceVariableDescriptor = sourceVariableDescriptor;
+    }
+
+    /**
+     * @param scoreDirector never null, an {@link InnerScoreDirector} of a {@link CloudProcess} solution
+     * @return never null, kept up to date by the score director
+     */
+    public static ComputerRemainingCapacitySupply demand(ScoreDirector<?> scoreDirector) {
+        InnerScoreDirector<?> innerScoreDirector = (InnerScoreDirector<?>) scoreDirector;
+        VariableDescriptor sourceVariableDescriptor = innerScoreDirector.getSolutionDescriptor()
+                .findEntityDescriptorOrFail(CloudProcess.class).getGenuineVariableDescriptor("computer");
+        return innerScoreDirector.getSupplyManager()
+                .demand(new ComputerRemainingCapacityDemand(sourceVariableDescriptor));
+    }
+
+    @Override
+    public ComputerRemainingCapacitySupply createExternalizedSupply(InnerScoreDirector scoreDirector) {
+        return new ComputerRemainingCapacitySupply(sourceVariableDescriptor);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ComputerRemainingCapacityDemand)) {
+            return false;
+        }
+        return sourceVariableDescriptor.equals(((ComputerRemainingCapacityDemand) o).sourceVariableDescriptor);
+    }
+
+    @Override
+    public int hashCode() {
+        return CLASS_NAME_HASH_CODE + sourceVariableDescriptor.hashCode();
+    }
+}
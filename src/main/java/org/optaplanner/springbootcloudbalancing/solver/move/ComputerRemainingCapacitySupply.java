@@ -0,0 +1,166 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.optaplanner.springbootcloudbalancing.solver.move;
+
+import org.optaplanner.core.impl.domain.variable.descriptor.VariableDescriptor;
+import org.optaplanner.core.impl.domain.variable.listener.StatefulVariableListener;
+import org.optaplanner.core.impl.domain.variable.supply.Supply;
+import org.optaplanner.core.impl.score.director.ScoreDirector;
+import org.optaplanner.springbootcloudbalancing.domain.CloudBalance;
+import org.optaplanner.springbootcloudbalancing.domain.CloudComputer;
+import org.optaplanner.springbootcloudbalancing.domain.CloudProcess;
+
+/**
+ * The remaining cpu power, memory and network bandwidth of every computer in the working solution,
+ * negative if the computer is overloaded.
+ * <p>
+ * Every score director has its own, updated incrementally when {@link CloudProcess#getComputer()} changes,
+ * so move threads and partitions do not share it.
+ * It keeps them in primitive arrays at the {@link CloudComputer#getIndex() index} of the computer.
+ */
+public class ComputerRemainingCapacitySupply implements StatefulVariableListener<CloudProcess>, Supply {
+
+    private final VariableDescriptor sourceVariableDescriptor;
+
+    // The score director resets every supply when a computer is added or removed
+    private int[] remainingCpuPowers = null;
+    private int[] remainingMemories = null;
+    private int[] remainingNetworkBandwidths = null;
+
+    public ComputerRemainingCapacitySupply(VariableDescriptor sourceVariableDescriptor) {
+        this.sourceVariableDescriptor = sourceVariableDescriptor;
+    }
+
+    @Override
+    public VariableDescriptor getSourceVariableDescriptor() {
+        return sourceVariableDescriptor;
+    }
+
+    @Override
+    public void resetWorkingSolution(ScoreDirector scoreDirector) {
+        CloudBalance cloudBalance = (CloudBalance) scoreDirector.getWorkingSolution();
+        int computerIndexLimit = 0;
+        for (CloudComputer computer : cloudBalance.getComputerList()) {
+            computerIndexLimit = Math.max(computerIndexLimit, computer.getIndex() + 1);
+        }
+        remainingCpuPowers = new int[computerIndexLimit];
+        remainingMemories = new int[computerIndexLimit];
+        remainingNetworkBandwidths = new int[computerIndexLimit];
+        for (CloudComputer computer : cloudBalance.getComputerList()) {
+            remainingCpuPowers[computer.getIndex()] = computer.getCpuPower();
+            remainingMemories[computer.getIndex()] = computer.getMemory();
+            remainingNetworkBandwidths[computer.getIndex()] = computer.getNetworkBandwidth();
+        }
+        for (CloudProcess process : cloudBalance.getProcessList()) {
+            insert(process);
+        }
+    }
+
+    @Override
+    public void clearWorkingSolution(ScoreDirector scoreDirector) {
+        remainingCpuPowers = null;
+        remainingMemories = null;
+        remainingNetworkBandwidths = null;
+    }
+
+    @Override
+    public void beforeEntityAdded(ScoreDirector scoreDirector, CloudProcess process) {
+        // Do nothing
+    }
+
+    @Override
+    public void afterEntityAdded(ScoreDirector scoreDirector, CloudProcess process) {
+        insert(process);
+    }
+
+    @Override
+    public void beforeVariableChanged(ScoreDirector scoreDirector, CloudProcess process) {
+        retract(process);
+    }
+
+    @Override
+    public void afterVariableChanged(ScoreDirector scoreDirector, CloudProcess process) {
+        insert(process);
+    }
+
+    @Override
+    public void beforeEntityRemoved(ScoreDirector scoreDirector, CloudProcess process) {
+        retract(process);
+    }
+
+    @Override
+    public void afterEntityRemoved(ScoreDirector scoreDirector, CloudProcess process) {
+        // Do nothing
+    }
+
+    private void insert(CloudProcess process) {
+        CloudComputer computer = process.getComputer();
+        if (computer == null) {
+            return;
+        }
+        int computerIndex = computer.getIndex();
+        remainingCpuPowers[computerIndex] -= process.getRequiredCpuPower();
+        remainingMemories[computerIndex] -= process.getRequiredMemory();
+        remainingNetworkBandwidths[computerIndex] -= process.getRequiredNetworkBandwidth();
+    }
+
+    private void retract(CloudProcess process) {
+        CloudComputer computer = process.getComputer();
+        if (computer == null) {
+            return;
+        }
+        int computerIndex = computer.getIndex();
+        remainingCpuPowers[computerIndex] += process.getRequiredCpuPower();
+        remainingMemories[computerIndex] += process.getRequiredMemory();
+        remainingNetworkBandwidths[computerIndex] += process.getRequiredNetworkBandwidth();
+    }
+
+    /**
+     * @param computer never null
+     * @param addedProcess never null, the process that would move to the computer
+     * @param removedProcess null if no process would leave the computer in exchange
+     * @return true if the computer already lacks a resource and the exchange would make it lack more of it
+     */
+    public boolean isOverloadIncreased(CloudComputer computer, CloudProcess addedProcess,
+            CloudProcess removedProcess) {
+        int computerIndex = computer.getIndex();
+        return (remainingCpuPowers[computerIndex] < 0 && addedProcess.getRequiredCpuPower()
+                > (removedProcess == null ? 0 : removedProcess.getRequiredCpuPower()))
+                || (remainingMemories[computerIndex] < 0 && addedProcess.getRequiredMemory()
+                > (removedProcess == null ? 0 : removedProcess.getRequiredMemory()))
+                || (remainingNetworkBandwidths[computerIndex] < 0 && addedProcess.getRequiredNetworkBandwidth()
+                > (removedProcess == null ? 0 : removedProcess.getRequiredNetworkBandwidth()));
+    }
+
+    /**
+     * @return null if the computer is not in the working solution,
+     * otherwise its remaining cpu power, memory and network bandwidth
+     */
+    public int[] getRemainingCapacity(CloudComputer computer) {
+        int computerIndex = computer.getIndex();
+        if (computerIndex < 0 || computerIndex >= remainingCpuPowers.length) {
+            return null;
+        }
+        return new int[] {remainingCpuPowers[computerIndex], remainingMemories[computerIndex],
+                remainingNetworkBandwidths[computerIndex]};
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + sourceVariableDescriptor.getSimpleEntityAndVariableName() + ")";
+    }
+}
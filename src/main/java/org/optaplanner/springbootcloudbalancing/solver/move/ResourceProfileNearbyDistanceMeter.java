@@ -0,0 +1,42 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.optaplanner.springbootcloudbalancing.solver.move;
+
+import org.optaplanner.core.impl.heuristic.selector.common.nearby.NearbyDistanceMeter;
+import org.optaplanner.springbootcloudbalancing.domain.CloudProcess;
+
+/**
+ * Processes that require about the same cpu power, memory and network bandwidth are near each other,
+ * so a nearby swap move exchanges processes that fit where the other one was.
+ * <p>
+ * Every resource counts the same, whatever its unit: the distance is the sum of the relative differences,
+ * from 0.0 for the same requirements to 3.0.
+ */
+public class ResourceProfileNearbyDistanceMeter implements NearbyDistanceMeter<CloudProcess, CloudProcess> {
+
+    @Override
+    public double getNearbyDistance(CloudProcess origin, CloudProcess destination) {
+        return relativeDifference(origin.getRequiredCpuPower(), destination.getRequiredCpuPower())
+                + relativeDifference(origin.getRequiredMemory(), destination.getRequiredMemory())
+                + relativeDifference(origin.getRequiredNetworkBandwidth(), destination.getRequiredNetworkBandwidth());
+    }
+
+    private static double relativeDifference(int a, int b) {
+        int max = Math.max(a, b);
+        return max <= 0 ? 0.0 : Math.abs(a - b) / (double) max;
+    }
+}
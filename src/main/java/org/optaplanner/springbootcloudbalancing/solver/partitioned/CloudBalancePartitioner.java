@@ -0,0 +1,171 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.optaplanner.springbootcloudbalancing.solver.partitioned;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.optaplanner.core.impl.partitionedsearch.partitioner.SolutionPartitioner;
+import org.optaplanner.core.impl.score.director.ScoreDirector;
+import org.optaplanner.springbootcloudbalancing.domain.CloudBalance;
+import org.optaplanner.springbootcloudbalancing.domain.CloudComputer;
+import org.optaplanner.springbootcloudbalancing.domain.CloudProcess;
+
+/**
+ * Splits a {@link CloudBalance} into parts with a similar capacity, each with its own computers,
+ * and spreads the processes over the parts in proportion to their capacity.
+ * <p>
+ * The capacity of a computer is the sum of its cpu power, memory and network bandwidth,
+ * each relative to the total of all computers, so no resource dominates the others.
+ * A process that is already assigned stays in the part of its computer,
+ * so a warm start keeps its assignments.
+ */
+public class CloudBalancePartitioner implements SolutionPartitioner<CloudBalance> {
+
+    private int processesPerPart = 5000;
+
+    /**
+     * @param processesPerPart at least 1, the part count is the process count divided by this,
+     * but never more than the computer count
+     */
+    public void setProcessesPerPart(int processesPerPart) {
+        this.processesPerPart = processesPerPart;
+    }
+
+    @Override
+    public List<CloudBalance> splitWorkingSolution(ScoreDirector<CloudBalance> scoreDirector,
+            Integer runnablePartThreadLimit) {
+        CloudBalance originalSolution = scoreDirector.getWorkingSolution();
+        List<CloudComputer> originalComputerList = originalSolution.getComputerList();
+        List<CloudProcess> originalProcessList = originalSolution.getProcessList();
+        int partCount = Math.max(1, Math.min(originalProcessList.size() / processesPerPart,
+                originalComputerList.size()));
+
+        long totalCpuPower = 1L;
+        long totalMemory = 1L;
+        long totalNetworkBandwidth = 1L;
+        for (CloudComputer computer : originalComputerList) {
+            totalCpuPower += computer.getCpuPower();
+            totalMemory += computer.getMemory();
+            totalNetworkBandwidth += computer.getNetworkBandwidth();
+        }
+        ResourceWeights weights = new ResourceWeights(totalCpuPower, totalMemory, totalNetworkBandwidth);
+
+        List<Part> partList = new ArrayList<>(partCount);
+        for (int i = 0; i < partCount; i++) {
+            partList.add(new Part(originalComputerList.size() / partCount + 1,
+                    originalProcessList.size() / partCount + 1));
+        }
+        // Largest computers first, each to the part with the least capacity so far
+        List<CloudComputer> sortedComputerList = new ArrayList<>(originalComputerList);
+        sortedComputerList.sort(Comparator.comparingDouble(weights::capacityOf).reversed());
+        PriorityQueue<Part> capacityQueue = new PriorityQueue<>(partCount,
+                Comparator.comparingDouble(part -> part.capacity));
+        capacityQueue.addAll(partList);
+        Map<CloudComputer, Part> computerToPartMap = new HashMap<>(originalComputerList.size());
+        Map<CloudComputer, CloudComputer> computerToPartComputerMap = new HashMap<>(originalComputerList.size());
+        for (CloudComputer originalComputer : sortedComputerList) {
+            Part part = capacityQueue.poll();
+            CloudComputer partComputer = new CloudComputer(originalComputer.getId(), originalComputer.getCpuPower(),
+                    originalComputer.getMemory(), originalComputer.getNetworkBandwidth(), originalComputer.getCost());
+            part.computerList.add(partComputer);
+            part.capacity += weights.capacityOf(originalComputer);
+            computerToPartMap.put(originalComputer, part);
+            computerToPartComputerMap.put(originalComputer, partComputer);
+            capacityQueue.add(part);
+        }
+
+        // Assigned processes follow their computer, the others fill the least loaded part, largest first
+        List<CloudProcess> unassignedProcessList = new ArrayList<>();
+        for (CloudProcess originalProcess : originalProcessList) {
+            CloudComputer originalComputer = originalProcess.getComputer();
+            if (originalComputer == null) {
+                unassignedProcessList.add(originalProcess);
+            } else {
+                computerToPartMap.get(originalComputer).addProcess(originalProcess,
+                        computerToPartComputerMap.get(originalComputer), weights);
+            }
+        }
+        unassignedProcessList.sort(Comparator.comparingDouble(weights::demandOf).reversed());
+        PriorityQueue<Part> loadQueue = new PriorityQueue<>(partCount, Comparator.comparingDouble(Part::getLoadRatio));
+        loadQueue.addAll(partList);
+        for (CloudProcess originalProcess : unassignedProcessList) {
+            Part part = loadQueue.poll();
+            part.addProcess(originalProcess, null, weights);
+            loadQueue.add(part);
+        }
+
+        List<CloudBalance> partSolutionList = new ArrayList<>(partCount);
+        for (Part part : partList) {
+            partSolutionList.add(new CloudBalance(originalSolution.getId(), part.computerList, part.processList));
+        }
+        return partSolutionList;
+    }
+
+    private static class ResourceWeights {
+
+        private final double cpuPowerWeight;
+        private final double memoryWeight;
+        private final double networkBandwidthWeight;
+
+        private ResourceWeights(long totalCpuPower, long totalMemory, long totalNetworkBandwidth) {
+            cpuPowerWeight = 1.0 / totalCpuPower;
+            memoryWeight = 1.0 / totalMemory;
+            networkBandwidthWeight = 1.0 / totalNetworkBandwidth;
+        }
+
+        private double capacityOf(CloudComputer computer) {
+            return computer.getCpuPower() * cpuPowerWeight + computer.getMemory() * memoryWeight
+                    + computer.getNetworkBandwidth() * networkBandwidthWeight;
+        }
+
+        private double demandOf(CloudProcess process) {
+            return process.getRequiredCpuPower() * cpuPowerWeight + process.getRequiredMemory() * memoryWeight
+                    + process.getRequiredNetworkBandwidth() * networkBandwidthWeight;
+        }
+    }
+
+    private static class Part {
+
+        private final List<CloudComputer> computerList;
+        private final List<CloudProcess> processList;
+        private double capacity = 0.0;
+        private double demand = 0.0;
+
+        private Part(int computerListCapacity, int processListCapacity) {
+            computerList = new ArrayList<>(computerListCapacity);
+            processList = new ArrayList<>(processListCapacity);
+        }
+
+        private void addProcess(CloudProcess originalProcess, CloudComputer partComputer, ResourceWeights weights) {
+            CloudProcess partProcess = new CloudProcess(originalProcess.getId(), originalProcess.getRequiredCpuPower(),
+                    originalProcess.getRequiredMemory(), originalProcess.getRequiredNetworkBandwidth());
+            partProcess.setComputer(partComputer);
+            processList.add(partProcess);
+            demand += weights.demandOf(originalProcess);
+        }
+
+        private double getLoadRatio() {
+            return capacity == 0.0 ? Double.MAX_VALUE : demand / capacity;
+        }
+    }
+}
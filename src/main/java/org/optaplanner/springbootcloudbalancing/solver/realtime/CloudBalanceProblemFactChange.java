@@ -0,0 +1,206 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.optaplanner.springbootcloudbalancing.solver.realtime;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.optaplanner.core.impl.score.director.ScoreDirector;
+import org.optaplanner.core.impl.solver.ProblemFactChange;
+import org.optaplanner.springbootcloudbalancing.domain.CloudBalance;
+import org.optaplanner.springbootcloudbalancing.domain.CloudComputer;
+import org.optaplanner.springbootcloudbalancing.domain.CloudProcess;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A batch of computer and process additions and removals, applied to a solving tenant as a single change,
+ * so the solver restarts only once for the whole batch.
+ * <p>
+ * Removals are applied before additions. Unknown ids to remove and known ids to add are ignored,
+ * because failing would kill the solver thread.
+ */
+public class CloudBalanceProblemFactChange implements ProblemFactChange<CloudBalance> {
+
+    private static final Logger logger = LoggerFactory.getLogger(CloudBalanceProblemFactChange.class);
+
+    private List<Long> removedProcessIdList = new ArrayList<>();
+    private List<Long> removedComputerIdList = new ArrayList<>();
+    private List<CloudComputer> addedComputerList = new ArrayList<>();
+    /**
+     * The computer of an added process, if any, is looked up by its id.
+     */
+    private List<CloudProcess> addedProcessList = new ArrayList<>();
+
+    public List<Long> getRemovedProcessIdList() {
+        return removedProcessIdList;
+    }
+
+    public void setRemovedProcessIdList(List<Long> removedProcessIdList) {
+        this.removedProcessIdList = removedProcessIdList;
+    }
+
+    public List<Long> getRemovedComputerIdList() {
+        return removedComputerIdList;
+    }
+
+    public void setRemovedComputerIdList(List<Long> removedComputerIdList) {
+        this.removedComputerIdList = removedComputerIdList;
+    }
+
+    public List<CloudComputer> getAddedComputerList() {
+        return addedComputerList;
+    }
+
+    public void setAddedComputerList(List<CloudComputer> addedComputerList) {
+        this.addedComputerList = addedComputerList;
+    }
+
+    public List<CloudProcess> getAddedProcessList() {
+        return addedProcessList;
+    }
+
+    public void setAddedProcessList(List<CloudProcess> addedProcessList) {
+        this.addedProcessList = addedProcessList;
+    }
+
+    public boolean isEmpty() {
+        return removedProcessIdList.isEmpty() && removedComputerIdList.isEmpty()
+                && addedComputerList.isEmpty() && addedProcessList.isEmpty();
+    }
+
+    @Override
+    public void doChange(ScoreDirector<CloudBalance> scoreDirector) {
+        CloudBalance cloudBalance = scoreDirector.getWorkingSolution();
+        // A SolutionCloner does not clone problem fact lists (such as computerList), so the best solutions share them:
+        // never change such a list in place, always replace it with a shallow copy
+        List<CloudComputer> computerList = new ArrayList<>(cloudBalance.getComputerList());
+        cloudBalance.setComputerList(computerList);
+        List<CloudProcess> processList = new ArrayList<>(cloudBalance.getProcessList());
+        cloudBalance.setProcessList(processList);
+
+        removeProcesses(scoreDirector, processList);
+        removeComputers(scoreDirector, computerList, processList);
+        addComputers(scoreDirector, cloudBalance);
+        addProcesses(scoreDirector, cloudBalance);
+        scoreDirector.triggerVariableListeners();
+    }
+
+    private void removeProcesses(ScoreDirector<CloudBalance> scoreDirector, List<CloudProcess> processList) {
+        if (removedProcessIdList.isEmpty()) {
+            return;
+        }
+        Set<Long> removedProcessIdSet = new HashSet<>(removedProcessIdList);
+        for (Iterator<CloudProcess> it = processList.iterator(); it.hasNext(); ) {
+            CloudProcess process = it.next();
+            if (removedProcessIdSet.remove(process.getId())) {
+                scoreDirector.beforeEntityRemoved(process);
+                it.remove();
+                scoreDirector.afterEntityRemoved(process);
+            }
+        }
+        if (!removedProcessIdSet.isEmpty()) {
+            logger.warn("Ignoring the removal of unknown processes ({}).", removedProcessIdSet);
+        }
+    }
+
+    private void removeComputers(ScoreDirector<CloudBalance> scoreDirector,
+            List<CloudComputer> computerList, List<CloudProcess> processList) {
+        if (removedComputerIdList.isEmpty()) {
+            return;
+        }
+        Set<Long> removedComputerIdSet = new HashSet<>(removedComputerIdList);
+        for (CloudProcess process : processList) {
+            CloudComputer computer = process.getComputer();
+            if (computer != null && removedComputerIdSet.contains(computer.getId())) {
+                scoreDirector.beforeVariableChanged(process, "computer");
+                process.setComputer(null);
+                scoreDirector.afterVariableChanged(process, "computer");
+            }
+        }
+        for (Iterator<CloudComputer> it = computerList.iterator(); it.hasNext(); ) {
+            CloudComputer computer = it.next();
+            if (removedComputerIdSet.remove(computer.getId())) {
+                scoreDirector.beforeProblemFactRemoved(computer);
+                it.remove();
+                scoreDirector.afterProblemFactRemoved(computer);
+            }
+        }
+        if (!removedComputerIdSet.isEmpty()) {
+            logger.warn("Ignoring the removal of unknown computers ({}).", removedComputerIdSet);
+        }
+    }
+
+    private void addComputers(ScoreDirector<CloudBalance> scoreDirector, CloudBalance cloudBalance) {
+        if (addedComputerList.isEmpty()) {
+            return;
+        }
+        List<CloudComputer> computerList = cloudBalance.getComputerList();
+        Set<Long> computerIdSet = new HashSet<>(computerList.size() + addedComputerList.size());
+        for (CloudComputer computer : computerList) {
+            computerIdSet.add(computer.getId());
+        }
+        int addedComputerIndex = computerList.size();
+        for (CloudComputer computer : addedComputerList) {
+            if (!computerIdSet.add(computer.getId())) {
+                logger.warn("Ignoring the addition of computer ({}) because its id already exists.", computer);
+                continue;
+            }
+            scoreDirector.beforeProblemFactAdded(computer);
+            computerList.add(computer);
+        }
+        // The score director resets the score calculator, which needs the indexes, when a computer is added,
+        // so all added computers are indexed at once, before the first is reported
+        cloudBalance.indexComputers();
+        for (CloudComputer computer : computerList.subList(addedComputerIndex, computerList.size())) {
+            scoreDirector.afterProblemFactAdded(computer);
+        }
+    }
+
+    private void addProcesses(ScoreDirector<CloudBalance> scoreDirector, CloudBalance cloudBalance) {
+        if (addedProcessList.isEmpty()) {
+            return;
+        }
+        List<CloudComputer> computerList = cloudBalance.getComputerList();
+        List<CloudProcess> processList = cloudBalance.getProcessList();
+        Map<Long, CloudComputer> computerIdToComputerMap = new HashMap<>(computerList.size() * 2);
+        for (CloudComputer computer : computerList) {
+            computerIdToComputerMap.put(computer.getId(), computer);
+        }
+        Set<Long> processIdSet = new HashSet<>(processList.size() + addedProcessList.size());
+        for (CloudProcess process : processList) {
+            processIdSet.add(process.getId());
+        }
+        for (CloudProcess process : addedProcessList) {
+            if (!processIdSet.add(process.getId())) {
+                logger.warn("Ignoring the addition of process ({}) because its id already exists.", process);
+                continue;
+            }
+            CloudComputer computer = process.getComputer();
+            process.setComputer(computer == null ? null : computerIdToComputerMap.get(computer.getId()));
+            scoreDirector.beforeEntityAdded(process);
+            processList.add(process);
+            scoreDirector.afterEntityAdded(process);
+        }
+        cloudBalance.indexProcesses();
+    }
+}
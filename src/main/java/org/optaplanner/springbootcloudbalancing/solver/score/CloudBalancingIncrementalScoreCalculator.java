@@ -0,0 +1,165 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.optaplanner.springbootcloudbalancing.solver.score;
+
+import java.util.List;
+
+import org.optaplanner.core.api.score.buildin.hardsoft.HardSoftScore;
+import org.optaplanner.core.impl.score.director.incremental.IncrementalScoreCalculator;
+import org.optaplanner.springbootcloudbalancing.domain.CloudBalance;
+import org.optaplanner.springbootcloudbalancing.domain.CloudComputer;
+import org.optaplanner.springbootcloudbalancing.domain.CloudProcess;
+
+/**
+ * Java alternative to cloudBalancingScoreRules.drl.
+ * <p>
+ * Keeps the resource usage and the process count of every computer in primitive arrays
+ * at the {@link CloudComputer#getIndex() index} of the computer, so a change of {@link CloudProcess#getComputer()} is an O(1) delta on the score.
+ */
+public class CloudBalancingIncrementalScoreCalculator implements IncrementalScoreCalculator<CloudBalance> {
+
+    private int[] cpuPowerUsages;
+    private int[] memoryUsages;
+    private int[] networkBandwidthUsages;
+    private int[] processCounts;
+
+    private int hardScore;
+    private int softScore;
+
+    @Override
+    public void resetWorkingSolution(CloudBalance cloudBalance) {
+        List<CloudComputer> computerList = cloudBalance.getComputerList();
+        int computerIndexLimit = 0;
+        for (CloudComputer computer : computerList) {
+            if (computer.getIndex() < 0) {
+                throw new IllegalStateException("The computer (" + computer + ") is not indexed.");
+            }
+            computerIndexLimit = Math.max(computerIndexLimit, computer.getIndex() + 1);
+        }
+        // Removed computers leave gaps, so the arrays can be longer than the computerList
+        cpuPowerUsages = new int[computerIndexLimit];
+        memoryUsages = new int[computerIndexLimit];
+        networkBandwidthUsages = new int[computerIndexLimit];
+        processCounts = new int[computerIndexLimit];
+        boolean[] usedIndexes = new boolean[computerIndexLimit];
+        for (CloudComputer computer : computerList) {
+            if (usedIndexes[computer.getIndex()]) {
+                throw new IllegalStateException("The computer (" + computer + ") has the same index ("
+                        + computer.getIndex() + ") as another computer.");
+            }
+            usedIndexes[computer.getIndex()] = true;
+        }
+        hardScore = 0;
+        softScore = 0;
+        for (CloudProcess process : cloudBalance.getProcessList()) {
+            insert(process);
+        }
+    }
+
+    @Override
+    public void beforeEntityAdded(Object entity) {
+        // Do nothing
+    }
+
+    @Override
+    public void afterEntityAdded(Object entity) {
+        insert((CloudProcess) entity);
+    }
+
+    @Override
+    public void beforeVariableChanged(Object entity, String variableName) {
+        retract((CloudProcess) entity);
+    }
+
+    @Override
+    public void afterVariableChanged(Object entity, String variableName) {
+        insert((CloudProcess) entity);
+    }
+
+    @Override
+    public void beforeEntityRemoved(Object entity) {
+        retract((CloudProcess) entity);
+    }
+
+    @Override
+    public void afterEntityRemoved(Object entity) {
+        // Do nothing
+    }
+
+    private void insert(CloudProcess process) {
+        CloudComputer computer = process.getComputer();
+        if (computer == null) {
+            return;
+        }
+        int computerIndex = indexOf(computer);
+        hardScore += overUsageDelta(computer.getCpuPower(),
+                cpuPowerUsages[computerIndex], process.getRequiredCpuPower());
+        cpuPowerUsages[computerIndex] += process.getRequiredCpuPower();
+        hardScore += overUsageDelta(computer.getMemory(),
+                memoryUsages[computerIndex], process.getRequiredMemory());
+        memoryUsages[computerIndex] += process.getRequiredMemory();
+        hardScore += overUsageDelta(computer.getNetworkBandwidth(),
+                networkBandwidthUsages[computerIndex], process.getRequiredNetworkBandwidth());
+        networkBandwidthUsages[computerIndex] += process.getRequiredNetworkBandwidth();
+        if (processCounts[computerIndex] == 0) {
+            softScore -= computer.getCost();
+        }
+        processCounts[computerIndex]++;
+    }
+
+    private void retract(CloudProcess process) {
+        CloudComputer computer = process.getComputer();
+        if (computer == null) {
+            return;
+        }
+        int computerIndex = indexOf(computer);
+        hardScore += overUsageDelta(computer.getCpuPower(),
+                cpuPowerUsages[computerIndex], -process.getRequiredCpuPower());
+        cpuPowerUsages[computerIndex] -= process.getRequiredCpuPower();
+        hardScore += overUsageDelta(computer.getMemory(),
+                memoryUsages[computerIndex], -process.getRequiredMemory());
+        memoryUsages[computerIndex] -= process.getRequiredMemory();
+        hardScore += overUsageDelta(computer.getNetworkBandwidth(),
+                networkBandwidthUsages[computerIndex], -process.getRequiredNetworkBandwidth());
+        networkBandwidthUsages[computerIndex] -= process.getRequiredNetworkBandwidth();
+        processCounts[computerIndex]--;
+        if (processCounts[computerIndex] == 0) {
+            softScore += computer.getCost();
+        }
+    }
+
+    private int indexOf(CloudComputer computer) {
+        int computerIndex = computer.getIndex();
+        if (computerIndex < 0 || computerIndex >= processCounts.length) {
+            throw new IllegalStateException("The computer (" + computer
+                    + ") is not in the computerList of the working solution.");
+        }
+        return computerIndex;
+    }
+
+    /**
+     * @return the change of the hard score when the usage of a resource with the given capacity changes by delta
+     */
+    private static int overUsageDelta(int capacity, int usage, int delta) {
+        return Math.min(capacity - usage - delta, 0) - Math.min(capacity - usage, 0);
+    }
+
+    @Override
+    public HardSoftScore calculateScore() {
+        return HardSoftScore.of(hardScore, softScore);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.optaplanner.springbootcloudbalancing.domain;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CloudBalanceChangesTest {
+
+    private final CloudComputer computer0 = new CloudComputer(0L, 10, 10, 10, 100);
+    private final CloudComputer computer1 = new CloudComputer(1L, 10, 10, 10, 100);
+
+    @Test
+    public void between() {
+        int[] baseAssignments = CloudBalanceChanges.toAssignments(
+                createSolution(process(0L, computer0), process(1L, computer0), process(2L, null)));
+        CloudBalance solution = createSolution(process(0L, computer0), process(1L, computer1), process(2L, computer1));
+
+        CloudBalanceChanges changes = CloudBalanceChanges.between(3L, baseAssignments, 5L, solution);
+        assertEquals(3L, changes.getBaseVersion());
+        assertEquals(5L, changes.getVersion());
+        List<ProcessAssignment> changedAssignmentList = changes.getChangedAssignmentList();
+        assertEquals(2, changedAssignmentList.size());
+        assertAssignment(1L, 1L, changedAssignmentList.get(0));
+        assertAssignment(2L, 1L, changedAssignmentList.get(1));
+        assertNull(changes.getSolution());
+    }
+
+    @Test
+    public void betweenUnassigned() {
+        int[] baseAssignments = CloudBalanceChanges.toAssignments(
+                createSolution(process(0L, computer1), process(1L, computer0)));
+        CloudBalance solution = createSolution(process(0L, null), process(1L, computer0));
+
+        List<ProcessAssignment> changedAssignmentList = CloudBalanceChanges.between(0L, baseAssignments, 1L, solution)
+                .getChangedAssignmentList();
+        assertEquals(1, changedAssignmentList.size());
+        assertAssignment(0L, null, changedAssignmentList.get(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void betweenDifferentProcesses() {
+        int[] baseAssignments = CloudBalanceChanges.toAssignments(
+                createSolution(process(0L, computer0), process(1L, computer0)));
+        CloudBalanceChanges.between(0L, baseAssignments, 1L, createSolution(process(0L, computer0)));
+    }
+
+    @Test
+    public void toAssignments() {
+        int[] assignments = CloudBalanceChanges.toAssignments(
+                createSolution(process(0L, computer1), process(1L, null), process(2L, computer0)));
+        assertArrayEquals(new int[] {1, -1, 0}, assignments);
+    }
+
+    private CloudBalance createSolution(CloudProcess... processes) {
+        return new CloudBalance(0L, Arrays.asList(computer0, computer1), Arrays.asList(processes));
+    }
+
+    private static CloudProcess process(long id, CloudComputer computer) {
+        CloudProcess process = new CloudProcess(id, 1, 1, 1);
+        process.setComputer(computer);
+        return process;
+    }
+
+    private static void assertAssignment(Long processId, Long computerId, ProcessAssignment assignment) {
+        assertEquals(processId, assignment.getProcessId());
+        assertEquals(computerId, assignment.getComputerId());
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.optaplanner.springbootcloudbalancing.domain;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CloudBalanceFootprintTest {
+
+    private static final long OBJECT_HEADER_SIZE = 12L;
+    private static final long REFERENCE_SIZE = 4L;
+    private static final long BOX_SIZE = 16L;
+
+    /**
+     * A process has a primitive id, its required resources, its index and a reference to its computer,
+     * so with compressed references it takes 40 bytes, plus 4 bytes for its slot in the processList.
+     * A boxed id would add a Long of 16 bytes.
+     */
+    @Test
+    public void bytesPerProcess() {
+        long bytesPerProcess = estimateShallowSize(CloudProcess.class) + REFERENCE_SIZE;
+        assertTrue("A process takes " + bytesPerProcess + " bytes.", bytesPerProcess <= 44L);
+    }
+
+    @Test
+    public void indexesAreDense() {
+        CloudBalance cloudBalance = new CloudBalanceGenerator(37).generate(0L, 5, 20);
+        for (int i = 0; i < cloudBalance.getComputerList().size(); i++) {
+            assertEquals(i, cloudBalance.getComputerList().get(i).getIndex());
+        }
+        for (int i = 0; i < cloudBalance.getProcessList().size(); i++) {
+            assertEquals(i, cloudBalance.getProcessList().get(i).getIndex());
+        }
+
+        // A removed computer leaves a gap, an added computer does not fill it
+        cloudBalance.getComputerList().remove(2);
+        CloudComputer addedComputer = new CloudComputer(5L, 1, 1, 1, 1);
+        cloudBalance.getComputerList().add(addedComputer);
+        cloudBalance.indexComputers();
+        assertEquals(5, addedComputer.getIndex());
+        assertEquals(3, cloudBalance.getComputerList().get(2).getIndex());
+    }
+
+    /**
+     * Estimates the field layout of HotSpot with compressed references: a 12 byte header and 4 bytes per reference,
+     * aligned to 8 bytes. A field of a boxed type also counts the 16 bytes of the box it holds.
+     * Unlike measuring the heap, this does not depend on the heap size or on when the garbage collector runs.
+     */
+    private static long estimateShallowSize(Class<?> type) {
+        long size = OBJECT_HEADER_SIZE;
+        for (Class<?> declaringClass = type; declaringClass != Object.class;
+                declaringClass = declaringClass.getSuperclass()) {
+            for (Field field : declaringClass.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers())) {
+                    continue;
+                }
+                Class<?> fieldType = field.getType();
+                if (fieldType == long.class || fieldType == double.class) {
+                    size += 8L;
+                } else if (fieldType == int.class || fieldType == float.class) {
+                    size += 4L;
+                } else if (fieldType == short.class || fieldType == char.class) {
+                    size += 2L;
+                } else if (fieldType == byte.class || fieldType == boolean.class) {
+                    size += 1L;
+                } else if (Number.class.isAssignableFrom(fieldType) || fieldType == Boolean.class
+                        || fieldType == Character.class) {
+                    size += REFERENCE_SIZE + BOX_SIZE;
+                } else {
+                    size += REFERENCE_SIZE;
+                }
+            }
+        }
+        return (size + 7L) / 8L * 8L;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.optaplanner.springbootcloudbalancing.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates reproducible problems: the same seed and sizes always generate the same problem.
+ * <p>
+ * Every computer is one of a few machine types, larger types are cheaper per unit of capacity.
+ * With 3 processes per computer, most problems have a feasible solution.
+ */
+public class CloudBalanceGenerator {
+
+    // cpuPower, memory, networkBandwidth, cost
+    private static final int[][] COMPUTER_TYPES = {
+            {4, 8, 4, 120},
+            {8, 16, 8, 220},
+            {16, 32, 12, 400},
+            {24, 48, 16, 560},
+            {32, 64, 24, 700}};
+
+    private final Random random;
+
+    public CloudBalanceGenerator(long seed) {
+        random = new Random(seed);
+    }
+
+    /**
+     * @param processListSize at least 1, it has a third as many computers
+     */
+    public CloudBalance generate(long id, int processListSize) {
+        return generate(id, Math.max(1, processListSize / 3), processListSize);
+    }
+
+    public CloudBalance generate(long id, int computerListSize, int processListSize) {
+        List<CloudComputer> computerList = new ArrayList<>(computerListSize);
+        for (int i = 0; i < computerListSize; i++) {
+            int[] computerType = COMPUTER_TYPES[random.nextInt(COMPUTER_TYPES.length)];
+            computerList.add(new CloudComputer(i, computerType[0], computerType[1], computerType[2], computerType[3]));
+        }
+        List<CloudProcess> processList = new ArrayList<>(processListSize);
+        for (int i = 0; i < processListSize; i++) {
+            processList.add(new CloudProcess(i, random.nextInt(6) + 1, random.nextInt(12) + 1,
+                    random.nextInt(4) + 1));
+        }
+        return new CloudBalance(id, computerList, processList);
+    }
+}
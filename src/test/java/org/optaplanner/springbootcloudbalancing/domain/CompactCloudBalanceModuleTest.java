@@ -0,0 +1,121 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.optaplanner.springbootcloudbalancing.domain;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.Test;
+import org.optaplanner.core.api.score.buildin.hardsoft.HardSoftScore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CompactCloudBalanceModuleTest {
+
+    private final ObjectMapper defaultObjectMapper = new ObjectMapper();
+    private final ObjectMapper compactJsonObjectMapper = new ObjectMapper()
+            .registerModule(new CompactCloudBalanceModule());
+    private final ObjectMapper compactSmileObjectMapper = new ObjectMapper(new SmileFactory())
+            .registerModule(new CompactCloudBalanceModule());
+
+    @Test
+    public void processesReferenceComputersById() throws IOException {
+        CloudBalance cloudBalance = createAssignedSolution();
+        JsonNode json = compactJsonObjectMapper.readTree(compactJsonObjectMapper.writeValueAsBytes(cloudBalance));
+
+        assertEquals("0hard/-300soft", json.get("score").asText());
+        assertFalse(json.get("computerList").get(0).has("multiplicand"));
+        JsonNode process = json.get("processList").get(0);
+        assertFalse(process.has("computer"));
+        assertEquals(cloudBalance.getProcessList().get(0).getComputer().getId(),
+                process.get("computerId").asLong());
+        assertTrue(json.get("processList").get(2).get("computerId").isNull());
+    }
+
+    @Test
+    public void smallerThanDefaultRepresentation() throws IOException {
+        CloudBalance cloudBalance = new CloudBalanceGenerator(37L).generate(0L, 1000);
+        List<CloudComputer> computerList = cloudBalance.getComputerList();
+        for (CloudProcess process : cloudBalance.getProcessList()) {
+            process.setComputer(computerList.get((int) (process.getId() % computerList.size())));
+        }
+        int defaultSize = defaultObjectMapper.writeValueAsBytes(cloudBalance).length;
+        int compactJsonSize = compactJsonObjectMapper.writeValueAsBytes(cloudBalance).length;
+        int compactSmileSize = compactSmileObjectMapper.writeValueAsBytes(cloudBalance).length;
+        assertTrue("The compact JSON (" + compactJsonSize + " bytes) is not less than half of the default JSON ("
+                + defaultSize + " bytes).", compactJsonSize < defaultSize / 2);
+        assertTrue("The compact Smile (" + compactSmileSize + " bytes) is not smaller than the compact JSON ("
+                + compactJsonSize + " bytes).", compactSmileSize < compactJsonSize);
+    }
+
+    @Test
+    public void readSharesComputers() throws IOException {
+        CloudBalance cloudBalance = createAssignedSolution();
+        for (ObjectMapper objectMapper : new ObjectMapper[] {compactJsonObjectMapper, compactSmileObjectMapper}) {
+            CloudBalance readSolution = objectMapper.readValue(objectMapper.writeValueAsBytes(cloudBalance),
+                    CloudBalance.class);
+            List<CloudComputer> computerList = readSolution.getComputerList();
+            List<CloudProcess> processList = readSolution.getProcessList();
+            assertEquals(HardSoftScore.of(0, -300), readSolution.getScore());
+            assertSame(computerList.get(1), processList.get(0).getComputer());
+            assertSame(computerList.get(1), processList.get(1).getComputer());
+            assertNull(processList.get(2).getComputer());
+            assertEquals(20, processList.get(1).getRequiredMemory());
+        }
+    }
+
+    @Test(expected = JsonMappingException.class)
+    public void readUnknownComputerId() throws IOException {
+        compactJsonObjectMapper.readValue("{\"id\":0,\"computerList\":[{\"id\":0,\"cpuPower\":1,\"memory\":1,"
+                + "\"networkBandwidth\":1,\"cost\":1}],\"processList\":[{\"id\":0,\"requiredCpuPower\":1,"
+                + "\"requiredMemory\":1,\"requiredNetworkBandwidth\":1,\"computerId\":7}]}", CloudBalance.class);
+    }
+
+    @Test(expected = JsonMappingException.class)
+    public void readMissingProcessId() throws IOException {
+        defaultObjectMapper.readValue("{\"id\":0,\"computerList\":[],\"processList\":[{\"id\":0,"
+                + "\"requiredCpuPower\":1,\"requiredMemory\":1,\"requiredNetworkBandwidth\":1},"
+                + "{\"requiredCpuPower\":1,\"requiredMemory\":1,\"requiredNetworkBandwidth\":1}]}",
+                CloudBalance.class);
+    }
+
+    @Test(expected = JsonMappingException.class)
+    public void readMissingComputerId() throws IOException {
+        compactJsonObjectMapper.readValue("{\"id\":0,\"computerList\":[{\"cpuPower\":1,\"memory\":1,"
+                + "\"networkBandwidth\":1,\"cost\":1}],\"processList\":[]}", CloudBalance.class);
+    }
+
+    private static CloudBalance createAssignedSolution() {
+        CloudBalance cloudBalance = new CloudBalanceGenerator(37L).generate(0L, 2, 3);
+        List<CloudProcess> processList = cloudBalance.getProcessList();
+        CloudComputer computer = cloudBalance.getComputerList().get(1);
+        processList.get(0).setComputer(computer);
+        processList.get(1).setComputer(computer);
+        processList.get(1).setRequiredMemory(20);
+        cloudBalance.setScore(HardSoftScore.of(0, -300));
+        return cloudBalance;
+    }
+}
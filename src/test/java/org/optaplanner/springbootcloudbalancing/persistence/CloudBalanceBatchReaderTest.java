@@ -0,0 +1,88 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.optaplanner.springbootcloudbalancing.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.optaplanner.springbootcloudbalancing.domain.CloudBalance;
+import org.optaplanner.springbootcloudbalancing.solver.SolverMode;
+import org.optaplanner.springbootcloudbalancing.solver.SolverSubmission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CloudBalanceBatchReaderTest {
+
+    private static final String PROBLEM = "{\"id\":3,"
+            + "\"computerList\":[{\"id\":0,\"cpuPower\":24,\"memory\":96,\"networkBandwidth\":16,\"cost\":4800}],"
+            + "\"processList\":[{\"id\":0,\"requiredCpuPower\":1,\"requiredMemory\":2,\"requiredNetworkBandwidth\":3,"
+            + "\"computer\":{\"id\":0}}]}";
+
+    private final CloudBalanceBatchReader reader = new CloudBalanceBatchReader(new ObjectMapper());
+
+    @Test
+    public void read() throws IOException {
+        List<SolverSubmission<CloudBalance>> submissionList = read("[{\"tenantId\":\"a\",\"problem\":" + PROBLEM
+                + "},{\"tenantId\":7,\"solverOptions\":{\"priority\":2,\"solverMode\":\"PARTITIONED_SEARCH\"},"
+                + "\"problem\":" + PROBLEM + "}]");
+
+        assertEquals(2, submissionList.size());
+        assertEquals("a", submissionList.get(0).getTenantId());
+        assertEquals(0, submissionList.get(0).getSolverOptions().getPriority());
+        assertEquals(SolverMode.LOCAL_SEARCH, submissionList.get(0).getSolverOptions().getSolverMode());
+        CloudBalance problem = submissionList.get(0).getPlanningProblem();
+        assertSame(problem.getComputerList().get(0), problem.getProcessList().get(0).getComputer());
+        assertEquals("7", submissionList.get(1).getTenantId());
+        assertEquals(2, submissionList.get(1).getSolverOptions().getPriority());
+        assertEquals(SolverMode.PARTITIONED_SEARCH, submissionList.get(1).getSolverOptions().getSolverMode());
+        assertEquals(0, read("[]").size());
+    }
+
+    @Test
+    public void refuseInvalidBatches() throws IOException {
+        assertInvalid("not a JSON array", "{\"tenantId\":\"a\",\"problem\":" + PROBLEM + "}");
+        assertInvalid("not a JSON object", "[{\"tenantId\":\"a\",\"problem\":" + PROBLEM + "},1]");
+        assertInvalid("needs a tenantId and a problem", "[{\"tenantId\":\"a\"}]");
+        assertInvalid("unknown field (priority)", "[{\"tenantId\":\"a\",\"priority\":1}]");
+        assertInvalid("not a string or an integer", "[{\"tenantId\":{},\"problem\":" + PROBLEM + "}]");
+        assertInvalid("not in the computerList", "[{\"tenantId\":\"a\",\"problem\":"
+                + PROBLEM.replace("\"computer\":{\"id\":0}", "\"computer\":{\"id\":1}") + "}]");
+        assertInvalid("not valid JSON", "[{\"tenantId\":\"a\",\"problem\":" + PROBLEM);
+    }
+
+    private List<SolverSubmission<CloudBalance>> read(String json) throws IOException {
+        return reader.read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private void assertInvalid(String expectedMessagePart, String json) throws IOException {
+        try {
+            read(json);
+            fail("The batch is not refused:\n" + json);
+        } catch (InvalidCloudBalanceStreamException e) {
+            assertTrue("The message (" + e.getMessage() + ") does not contain (" + expectedMessagePart + ").",
+                    e.getMessage().contains(expectedMessagePart));
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.optaplanner.springbootcloudbalancing.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.optaplanner.springbootcloudbalancing.domain.CloudBalance;
+import org.optaplanner.springbootcloudbalancing.domain.CloudComputer;
+import org.optaplanner.springbootcloudbalancing.domain.CloudProcess;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CloudBalanceNdjsonReaderTest {
+
+    private static final String HEADER = "{\"id\":7,\"computerCount\":2,\"processCount\":2}\n";
+    private static final String COMPUTERS = "{\"id\":0,\"cpuPower\":24,\"memory\":96,\"networkBandwidth\":16,\"cost\":4800}\n"
+            + "{\"id\":1,\"cpuPower\":6,\"memory\":4,\"networkBandwidth\":6,\"cost\":660}\n";
+
+    private final CloudBalanceNdjsonReader reader = new CloudBalanceNdjsonReader(new ObjectMapper());
+
+    @Test
+    public void read() throws IOException {
+        CloudBalance cloudBalance = read(HEADER + COMPUTERS
+                + "{\"id\":0,\"requiredCpuPower\":1,\"requiredMemory\":2,\"requiredNetworkBandwidth\":3,\"computerId\":1}\n"
+                + "{\"id\":1,\"requiredCpuPower\":5,\"requiredMemory\":3,\"requiredNetworkBandwidth\":2,\"computerId\":null}\n");
+
+        assertEquals(7L, cloudBalance.getId());
+        List<CloudComputer> computerList = cloudBalance.getComputerList();
+        assertEquals(2, computerList.size());
+        assertEquals(660, computerList.get(1).getCost());
+        List<CloudProcess> processList = cloudBalance.getProcessList();
+        assertEquals(2, processList.size());
+        assertEquals(2, processList.get(0).getRequiredMemory());
+        assertSame(computerList.get(1), processList.get(0).getComputer());
+        assertNull(processList.get(1).getComputer());
+    }
+
+    @Test
+    public void refuseInvalidStreams() throws IOException {
+        String process0 = "{\"id\":0,\"requiredCpuPower\":1,\"requiredMemory\":2,\"requiredNetworkBandwidth\":3}\n";
+        String process1 = "{\"id\":1,\"requiredCpuPower\":1,\"requiredMemory\":2,\"requiredNetworkBandwidth\":3}\n";
+        assertInvalid("fewer lines", HEADER + COMPUTERS + process0);
+        assertInvalid("more lines", HEADER + COMPUTERS + process0 + process1 + process1);
+        assertInvalid("is not unique", HEADER + COMPUTERS + process0 + process0);
+        assertInvalid("(9) that is not a computer", HEADER + COMPUTERS + process0
+                + "{\"id\":1,\"requiredCpuPower\":1,\"requiredMemory\":2,\"requiredNetworkBandwidth\":3,\"computerId\":9}");
+        assertInvalid("unknown field (requiredDisk)", HEADER + COMPUTERS + process0
+                + "{\"id\":1,\"requiredDisk\":1}");
+        assertInvalid("needs id, requiredCpuPower", HEADER + COMPUTERS + process0 + "{\"id\":1}");
+        assertInvalid("is negative (-1)", HEADER + COMPUTERS + process0
+                + "{\"id\":1,\"requiredCpuPower\":-1,\"requiredMemory\":2,\"requiredNetworkBandwidth\":3}");
+        assertInvalid("header needs", "{\"id\":7}\n");
+        assertInvalid("not valid JSON", HEADER + "{\"id\":0,");
+    }
+
+    private CloudBalance read(String ndjson) throws IOException {
+        return reader.read(new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private void assertInvalid(String expectedMessagePart, String ndjson) throws IOException {
+        try {
+            read(ndjson);
+            fail("The stream is not refused:\n" + ndjson);
+        } catch (InvalidCloudBalanceStreamException e) {
+            assertTrue("The message (" + e.getMessage() + ") does not contain (" + expectedMessagePart + ").",
+                    e.getMessage().contains(expectedMessagePart));
+        }
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.optaplanner.springbootcloudbalancing.persistence;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.optaplanner.springbootcloudbalancing.domain.CloudBalance;
+import org.optaplanner.springbootcloudbalancing.domain.CloudComputer;
+import org.optaplanner.springbootcloudbalancing.domain.CloudProcess;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SolverJournalTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final CloudBalanceJournalCodec codec = new CloudBalanceJournalCodec(new ObjectMapper());
+
+    @Test
+    public void replayUnfinishedTenants() throws Exception {
+        File directory = temporaryFolder.newFolder();
+        SolverJournal<CloudBalance> journal = createJournal(directory);
+        assertTrue(journal.replay().isEmpty());
+        journal.open();
+        CloudBalance problemA = createSolution(2, 3);
+        journal.submitted("A", 0L, new byte[] {5}, problemA);
+        journal.submitted("B", 1L, new byte[0], createSolution(2, 3));
+        journal.submitted("C", 2L, new byte[0], createSolution(2, 3));
+        journal.flush().join();
+        CloudBalance bestSolutionA = assign(createSolution(2, 3), 1, 0, 1);
+        journal.bestSolutionChanged("A", 0L, bestSolutionA);
+        // A problem fact change added a computer and a process
+        CloudBalance bestSolutionB = assign(createSolution(3, 4), 2, 2, 0, 1);
+        journal.bestSolutionChanged("B", 1L, bestSolutionB);
+        journal.stopped("C", 2L);
+        journal.flush().join();
+        // A stale best solution of a task that was replaced
+        journal.bestSolutionChanged("A", 7L, createSolution(2, 3));
+        journal.close();
+
+        List<JournaledTenant<CloudBalance>> unfinishedTenantList = createJournal(directory).replay();
+        assertEquals(2, unfinishedTenantList.size());
+        JournaledTenant<CloudBalance> tenantA = unfinishedTenantList.get(0);
+        assertEquals("A", tenantA.getTenantId());
+        assertArrayEquals(new byte[] {5}, tenantA.getSolverOptions());
+        assertAssignments(tenantA.getSolution(), 1L, 0L, 1L);
+        JournaledTenant<CloudBalance> tenantB = unfinishedTenantList.get(1);
+        assertEquals("B", tenantB.getTenantId());
+        assertEquals(3, tenantB.getSolution().getComputerList().size());
+        assertAssignments(tenantB.getSolution(), 2L, 2L, 0L, 1L);
+        assertTrue(tenantB.getSolution().getProcessList().get(0).getComputer()
+                == tenantB.getSolution().getComputerList().get(2));
+    }
+
+    @Test
+    public void resubmittedTenantsReplaceReplayedSegments() throws Exception {
+        File directory = temporaryFolder.newFolder();
+        SolverJournal<CloudBalance> journal = createJournal(directory);
+        journal.replay();
+        journal.open();
+        journal.submitted("A", 0L, new byte[0], createSolution(2, 3));
+        journal.submitted("B", 1L, new byte[0], createSolution(2, 3));
+        journal.removed("B", 1L);
+        journal.close();
+
+        SolverJournal<CloudBalance> restartedJournal = createJournal(directory);
+        List<JournaledTenant<CloudBalance>> unfinishedTenantList = restartedJournal.replay();
+        assertEquals(1, unfinishedTenantList.size());
+        restartedJournal.open();
+        restartedJournal.submitted("A", 0L, new byte[0], unfinishedTenantList.get(0).getSolution());
+        restartedJournal.deleteReplayedSegments();
+        restartedJournal.close();
+        assertEquals(1, directory.listFiles().length);
+        assertEquals(1, createJournal(directory).replay().size());
+    }
+
+    @Test
+    public void removalDoesNotRemoveLaterSubmission() throws Exception {
+        File directory = temporaryFolder.newFolder();
+        SolverJournal<CloudBalance> journal = createJournal(directory);
+        journal.replay();
+        journal.open();
+        journal.submitted("A", 0L, new byte[0], createSolution(2, 3));
+        // The tenant was resubmitted before the removal of its first task was journaled
+        journal.submitted("A", 1L, new byte[] {5}, createSolution(2, 3));
+        journal.removed("A", 0L);
+        journal.flush().join();
+        journal.bestSolutionChanged("A", 1L, assign(createSolution(2, 3), 1, 0, 1));
+        journal.close();
+
+        List<JournaledTenant<CloudBalance>> unfinishedTenantList = createJournal(directory).replay();
+        assertEquals(1, unfinishedTenantList.size());
+        JournaledTenant<CloudBalance> tenantA = unfinishedTenantList.get(0);
+        assertEquals(1L, tenantA.getSequenceNumber());
+        assertArrayEquals(new byte[] {5}, tenantA.getSolverOptions());
+        assertAssignments(tenantA.getSolution(), 1L, 0L, 1L);
+    }
+
+    @Test
+    public void compactSegmentsOfFinishedTenants() throws Exception {
+        File directory = temporaryFolder.newFolder();
+        SolverJournal<CloudBalance> journal = new SolverJournal<>(directory, 1024, 10L, codec);
+        journal.replay();
+        journal.open();
+        journal.submitted("L", 0L, new byte[] {5}, createSolution(2, 3));
+        for (int i = 1; i <= 200; i++) {
+            String tenantId = "T" + i;
+            journal.submitted(tenantId, i, new byte[0], createSolution(2, 3));
+            journal.flush().join();
+            journal.bestSolutionChanged(tenantId, i, assign(createSolution(2, 3), 1, 0, 1));
+            journal.bestSolutionChanged("L", 0L, assign(createSolution(2, 3), i % 2, 1, 0));
+            journal.flush().join();
+            journal.stopped(tenantId, i);
+            journal.flush().join();
+            assertTrue(directory.listFiles().length <= 4);
+        }
+        journal.close();
+
+        List<JournaledTenant<CloudBalance>> unfinishedTenantList = createJournal(directory).replay();
+        assertEquals(1, unfinishedTenantList.size());
+        JournaledTenant<CloudBalance> tenantL = unfinishedTenantList.get(0);
+        assertEquals("L", tenantL.getTenantId());
+        assertEquals(0L, tenantL.getSequenceNumber());
+        assertArrayEquals(new byte[] {5}, tenantL.getSolverOptions());
+        assertAssignments(tenantL.getSolution(), 0L, 1L, 0L);
+    }
+
+    @Test
+    public void ignoreTornRecord() throws Exception {
+        File directory = temporaryFolder.newFolder();
+        SolverJournal<CloudBalance> journal = createJournal(directory);
+        journal.replay();
+        journal.open();
+        journal.submitted("A", 0L, new byte[0], createSolution(2, 3));
+        journal.flush().join();
+        journal.bestSolutionChanged("A", 0L, assign(createSolution(2, 3), 1, 1, 1));
+        journal.close();
+        // Flip a byte of the last record, as if the crash happened while it was written
+        File segmentFile = directory.listFiles()[0];
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile, "rw")) {
+            long position = 0L;
+            long lastRecordPosition = 0L;
+            while (true) {
+                file.seek(position);
+                int length = file.readInt();
+                if (length == 0) {
+                    break;
+                }
+                lastRecordPosition = position;
+                position += 2 * Integer.BYTES + length;
+            }
+            file.seek(lastRecordPosition + 2 * Integer.BYTES + 1);
+            int b = file.read();
+            file.seek(lastRecordPosition + 2 * Integer.BYTES + 1);
+            file.write(b ^ 0xFF);
+        }
+
+        List<JournaledTenant<CloudBalance>> unfinishedTenantList = createJournal(directory).replay();
+        assertEquals(1, unfinishedTenantList.size());
+        for (CloudProcess process : unfinishedTenantList.get(0).getSolution().getProcessList()) {
+            assertNull(process.getComputer());
+        }
+    }
+
+    @Test
+    public void stopReplayAtTornRecordOfEarlierSegment() throws Exception {
+        File directory = temporaryFolder.newFolder();
+        // Every submission is larger than a segment, so it gets a segment of its own
+        SolverJournal<CloudBalance> journal = new SolverJournal<>(directory, 1024, 10L, codec);
+        journal.replay();
+        journal.open();
+        journal.submitted("A", 0L, new byte[0], createSolution(20, 30));
+        journal.flush().join();
+        journal.submitted("B", 1L, new byte[0], createSolution(20, 30));
+        journal.close();
+        File[] segmentFiles = directory.listFiles();
+        Arrays.sort(segmentFiles);
+        // Flip a byte of the submission of A, the first record, which is followed by a segment with B
+        for (int i = 0; i < segmentFiles.length; i++) {
+            try (RandomAccessFile file = new RandomAccessFile(segmentFiles[i], "rw")) {
+                if (file.readInt() == 0) {
+                    continue;
+                }
+                assertTrue(i < segmentFiles.length - 1);
+                file.seek(2 * Integer.BYTES + 1);
+                int b = file.read();
+                file.seek(2 * Integer.BYTES + 1);
+                file.write(b ^ 0xFF);
+                break;
+            }
+        }
+
+        assertTrue(createJournal(directory).replay().isEmpty());
+    }
+
+    private SolverJournal<CloudBalance> createJournal(File directory) {
+        return new SolverJournal<>(directory, 64 * 1024, 10L, codec);
+    }
+
+    private static CloudBalance createSolution(int computerListSize, int processListSize) {
+        List<CloudComputer> computerList = new ArrayList<>(computerListSize);
+        for (int i = 0; i < computerListSize; i++) {
+            computerList.add(new CloudComputer(i, 10, 10, 10, 100));
+        }
+        List<CloudProcess> processList = new ArrayList<>(processListSize);
+        for (int i = 0; i < processListSize; i++) {
+            processList.add(new CloudProcess(i, 1, 1, 1));
+        }
+        return new CloudBalance(0L, computerList, processList);
+    }
+
+    private static CloudBalance assign(CloudBalance solution, int... computerIndexes) {
+        for (int i = 0; i < computerIndexes.length; i++) {
+            solution.getProcessList().get(i).setComputer(solution.getComputerList().get(computerIndexes[i]));
+        }
+        return solution;
+    }
+
+    private static void assertAssignments(CloudBalance solution, Long... computerIds) {
+        List<Long> actualComputerIdList = new ArrayList<>();
+        for (CloudProcess process : solution.getProcessList()) {
+            actualComputerIdList.add(process.getComputer() == null ? null : process.getComputer().getId());
+        }
+        assertEquals(Arrays.asList(computerIds), actualComputerIdList);
+    }
+}
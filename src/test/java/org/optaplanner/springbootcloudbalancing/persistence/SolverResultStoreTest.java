@@ -0,0 +1,138 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.optaplanner.springbootcloudbalancing.persistence;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.optaplanner.springbootcloudbalancing.domain.CloudBalance;
+import org.optaplanner.springbootcloudbalancing.domain.CloudBalanceGenerator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SolverResultStoreTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final CloudBalanceJournalCodec codec = new CloudBalanceJournalCodec(new ObjectMapper());
+
+    @Test
+    public void storeAndRead() throws Exception {
+        SolverResultStore<CloudBalance> store = createStore(temporaryFolder.newFolder(), 64 * 1024);
+        CloudBalance solution = new CloudBalanceGenerator(37L).generate(0L, 3, 4);
+        solution.getProcessList().get(1).setComputer(solution.getComputerList().get(2));
+        byte[] solutionJson = codec.writeSolution(solution);
+        byte[] compactSolution = codec.writeCompactSolution(solution);
+        StoredSolverResult storedResult = store.store(solutionJson, compactSolution, toBytes("\"0hard/-1soft\""));
+
+        CloudBalance readSolution = store.readSolution(storedResult);
+        assertEquals(4, readSolution.getProcessList().size());
+        assertSame(readSolution.getComputerList().get(2), readSolution.getProcessList().get(1).getComputer());
+        assertEquals(new String(solutionJson, StandardCharsets.UTF_8), toString(store.getSolutionJson(storedResult)));
+        assertEquals(new String(compactSolution, StandardCharsets.UTF_8),
+                toString(store.getCompactSolution(storedResult)));
+        assertEquals("\"0hard/-1soft\"", toString(store.getScoreJson(storedResult)));
+        assertTrue(store.getSolutionJson(storedResult).isReadOnly());
+        assertTrue(store.getCompactSolution(storedResult).isReadOnly());
+        assertEquals(64 * 1024, store.getMappedByteCount());
+        store.close();
+    }
+
+    @Test
+    public void deleteReleasesSegmentWithoutLiveResults() throws Exception {
+        File directory = temporaryFolder.newFolder();
+        SolverResultStore<CloudBalance> store = createStore(directory, 1024);
+        List<StoredSolverResult> storedResultList = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            storedResultList.add(store.store(new byte[200], new byte[0], new byte[10]));
+        }
+        int segmentCount = countSegmentFiles(directory);
+        assertTrue(segmentCount > 1);
+        assertEquals(segmentCount * 1024L, store.getMappedByteCount());
+
+        // The first segment is released once all of its results are deleted
+        StoredSolverResult firstResult = storedResultList.get(0);
+        for (StoredSolverResult storedResult : storedResultList) {
+            if (storedResult.segment == firstResult.segment) {
+                store.delete(storedResult);
+            }
+        }
+        assertEquals(segmentCount - 1, countSegmentFiles(directory));
+        assertEquals((segmentCount - 1) * 1024L, store.getMappedByteCount());
+        // A deleted result stays readable through its mapping
+        assertEquals(200, store.getSolutionJson(firstResult).remaining());
+
+        store.close();
+        assertEquals(0, countSegmentFiles(directory));
+        assertEquals(0L, store.getMappedByteCount());
+    }
+
+    @Test
+    public void largeResultGetsItsOwnSegment() throws Exception {
+        File directory = temporaryFolder.newFolder();
+        SolverResultStore<CloudBalance> store = createStore(directory, 1024);
+        StoredSolverResult smallResult = store.store(new byte[10], new byte[0], new byte[10]);
+        StoredSolverResult largeResult = store.store(new byte[5000], new byte[0], new byte[10]);
+        assertFalse(smallResult.segment == largeResult.segment);
+        assertEquals(5000, store.getSolutionJson(largeResult).remaining());
+        assertEquals(2, countSegmentFiles(directory));
+        store.close();
+    }
+
+    @Test
+    public void openDeletesPreviousSegments() throws Exception {
+        File directory = temporaryFolder.newFolder();
+        SolverResultStore<CloudBalance> store = createStore(directory, 1024);
+        store.store(new byte[10], new byte[0], new byte[10]);
+        assertEquals(1, countSegmentFiles(directory));
+
+        createStore(directory, 1024);
+        assertEquals(0, countSegmentFiles(directory));
+    }
+
+    private SolverResultStore<CloudBalance> createStore(File directory, int segmentSize) {
+        SolverResultStore<CloudBalance> store = new SolverResultStore<>(directory, segmentSize, codec);
+        store.open();
+        return store;
+    }
+
+    private static int countSegmentFiles(File directory) {
+        return directory.listFiles((dir, name) -> name.endsWith(".results")).length;
+    }
+
+    private static byte[] toBytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String toString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.optaplanner.springbootcloudbalancing.solver;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class SolverCoreBudgetTest {
+
+    @Test
+    public void largeProblemOnIdleMachineGetsTheFreeCores() throws InterruptedException {
+        SolverCoreBudget solverCoreBudget = new SolverCoreBudget(32, 1000, 8);
+        assertEquals(8, solverCoreBudget.acquire(100_000, 0));
+        assertEquals(9, solverCoreBudget.getReservedCoreCount());
+        assertEquals(5, solverCoreBudget.acquire(5_000, 0));
+        // A single move thread is slower than none
+        assertEquals(0, solverCoreBudget.acquire(1_500, 0));
+        assertEquals(0, solverCoreBudget.acquire(100, 0));
+        assertEquals(17, solverCoreBudget.getReservedCoreCount());
+    }
+
+    @Test
+    public void freeCoresAreSharedWithQueuedTasks() throws InterruptedException {
+        SolverCoreBudget solverCoreBudget = new SolverCoreBudget(16, 1000, 32);
+        assertEquals(5, solverCoreBudget.acquire(100_000, 2));
+        assertEquals(0, solverCoreBudget.acquire(100_000, 20));
+        solverCoreBudget.release(5);
+        assertEquals(14, solverCoreBudget.acquire(100_000, 0));
+    }
+
+    @Test(timeout = 10_000L)
+    public void waitForFreeCore() throws Exception {
+        SolverCoreBudget solverCoreBudget = new SolverCoreBudget(4, 1000, 8);
+        assertEquals(3, solverCoreBudget.acquire(100_000, 0));
+        CompletableFuture<Integer> moveThreadCountFuture = CompletableFuture.supplyAsync(() -> {
+            try {
+                return solverCoreBudget.acquire(100_000, 0);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertWaiting(moveThreadCountFuture);
+        solverCoreBudget.release(3);
+        assertEquals(3, moveThreadCountFuture.get().intValue());
+    }
+
+    @Test
+    public void noMoveThreads() throws InterruptedException {
+        SolverCoreBudget solverCoreBudget = new SolverCoreBudget(32, 1000, 0);
+        assertEquals(0, solverCoreBudget.acquire(100_000, 0));
+    }
+
+    private static void assertWaiting(CompletableFuture<Integer> future) throws InterruptedException,
+            ExecutionException {
+        try {
+            future.get(200L, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return;
+        }
+        assertFalse("The future completed without a free core.", future.isDone());
+    }
+}
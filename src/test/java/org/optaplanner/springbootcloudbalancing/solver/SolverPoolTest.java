@@ -0,0 +1,126 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.optaplanner.springbootcloudbalancing.solver;
+
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.optaplanner.core.api.score.buildin.hardsoft.HardSoftScore;
+import org.optaplanner.core.api.solver.Solver;
+import org.optaplanner.core.api.solver.SolverFactory;
+import org.optaplanner.core.config.score.director.ScoreDirectorFactoryConfig;
+import org.optaplanner.core.config.solver.SolverConfig;
+import org.optaplanner.core.config.solver.termination.TerminationConfig;
+import org.optaplanner.springbootcloudbalancing.domain.CloudBalance;
+import org.optaplanner.springbootcloudbalancing.domain.CloudBalanceGenerator;
+import org.optaplanner.springbootcloudbalancing.domain.CloudProcess;
+import org.optaplanner.springbootcloudbalancing.solver.score.CloudBalancingIncrementalScoreCalculator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SolverPoolTest {
+
+    @Test
+    public void borrowTheMostRecentSolverWithAnEqualKey() {
+        SolverFactory<CloudBalance> solverFactory = createSolverFactory();
+        Solver<CloudBalance> solver1 = solverFactory.buildSolver();
+        Solver<CloudBalance> solver2 = solverFactory.buildSolver();
+        Solver<CloudBalance> solver3 = solverFactory.buildSolver();
+        SolverPool<CloudBalance> solverPool = new SolverPool<>(8);
+        solverPool.giveBack("a", solver1);
+        solverPool.giveBack("b", solver2);
+        solverPool.giveBack("a", solver3);
+        assertEquals(3, solverPool.getIdleSolverCount());
+
+        assertSame(solver3, solverPool.borrow("a"));
+        assertSame(solver1, solverPool.borrow("a"));
+        assertNull(solverPool.borrow("a"));
+        assertNull(solverPool.borrow("c"));
+        assertSame(solver2, solverPool.borrow("b"));
+        assertEquals(0, solverPool.getIdleSolverCount());
+    }
+
+    @Test
+    public void dropTheFirstReturnedSolverWhenFull() {
+        SolverFactory<CloudBalance> solverFactory = createSolverFactory();
+        Solver<CloudBalance> solver1 = solverFactory.buildSolver();
+        Solver<CloudBalance> solver2 = solverFactory.buildSolver();
+        Solver<CloudBalance> solver3 = solverFactory.buildSolver();
+        SolverPool<CloudBalance> solverPool = new SolverPool<>(2);
+        solverPool.giveBack("a", solver1);
+        solverPool.giveBack("b", solver2);
+        solverPool.giveBack("a", solver3);
+        assertEquals(2, solverPool.getIdleSolverCount());
+        assertSame(solver3, solverPool.borrow("a"));
+        assertNull(solverPool.borrow("a"));
+
+        SolverPool<CloudBalance> disabledSolverPool = new SolverPool<>(0);
+        disabledSolverPool.giveBack("a", solver1);
+        assertNull(disabledSolverPool.borrow("a"));
+    }
+
+    @Test
+    public void reusedSolverSolvesTheNextProblem() {
+        Solver<CloudBalance> solver = createSolverFactory().buildSolver();
+        CloudBalance firstBestSolution = solver.solve(new CloudBalanceGenerator(37L).generate(0L, 30));
+        assertEquals(30, firstBestSolution.getProcessList().size());
+        // For example when a tenant is terminated just after its solver stopped, the next solve starts over
+        solver.terminateEarly();
+
+        CloudBalance secondProblem = new CloudBalanceGenerator(41L).generate(1L, 60);
+        CloudBalance secondBestSolution = solver.solve(secondProblem);
+        assertEquals(1L, secondBestSolution.getId());
+        assertEquals(60, secondBestSolution.getProcessList().size());
+        assertTrue(((HardSoftScore) secondBestSolution.getScore()).isSolutionInitialized());
+        for (CloudProcess process : secondBestSolution.getProcessList()) {
+            assertTrue(secondBestSolution.getComputerList().contains(process.getComputer()));
+        }
+    }
+
+    @Test(timeout = 30_000L)
+    public void pooledSolverDoesNotKeepItsLastSolution() throws InterruptedException {
+        Solver<CloudBalance> solver = createSolverFactory().buildSolver();
+        CloudBalance problem = new CloudBalanceGenerator(37L).generate(0L, 30);
+        WeakReference<CloudBalance> problemReference = new WeakReference<>(problem);
+        WeakReference<CloudBalance> bestSolutionReference = new WeakReference<>(solver.solve(problem));
+        problem = null;
+        SolverPool<CloudBalance> solverPool = new SolverPool<>(8);
+        solverPool.giveBack("a", solver);
+
+        while (problemReference.get() != null || bestSolutionReference.get() != null) {
+            System.gc();
+            Thread.sleep(10L);
+        }
+        assertSame(solver, solverPool.borrow("a"));
+    }
+
+    private static SolverFactory<CloudBalance> createSolverFactory() {
+        SolverFactory<CloudBalance> solverFactory = SolverFactory.createEmpty();
+        SolverConfig solverConfig = solverFactory.getSolverConfig();
+        solverConfig.setSolutionClass(CloudBalance.class);
+        solverConfig.setEntityClassList(Collections.singletonList(CloudProcess.class));
+        ScoreDirectorFactoryConfig scoreDirectorFactoryConfig = new ScoreDirectorFactoryConfig();
+        scoreDirectorFactoryConfig.setIncrementalScoreCalculatorClass(CloudBalancingIncrementalScoreCalculator.class);
+        solverConfig.setScoreDirectorFactoryConfig(scoreDirectorFactoryConfig);
+        solverConfig.setTerminationConfig(new TerminationConfig().withMillisecondsSpentLimit(200L));
+        return solverFactory;
+    }
+}
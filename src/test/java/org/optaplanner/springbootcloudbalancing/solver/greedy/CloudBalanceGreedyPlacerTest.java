@@ -0,0 +1,122 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.optaplanner.springbootcloudbalancing.solver.greedy;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.optaplanner.core.api.score.buildin.hardsoft.HardSoftScore;
+import org.optaplanner.springbootcloudbalancing.domain.CloudBalance;
+import org.optaplanner.springbootcloudbalancing.domain.CloudBalanceGenerator;
+import org.optaplanner.springbootcloudbalancing.domain.CloudComputer;
+import org.optaplanner.springbootcloudbalancing.domain.CloudProcess;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CloudBalanceGreedyPlacerTest {
+
+    @Test
+    public void findComputer() {
+        CloudComputer small = new CloudComputer(0L, 4, 8, 4, 120);
+        CloudComputer large = new CloudComputer(1L, 32, 64, 24, 700);
+        CloudComputer usedLoose = new CloudComputer(2L, 16, 32, 12, 400);
+        CloudComputer usedTight = new CloudComputer(3L, 16, 32, 12, 400);
+        CloudProcess looseProcess = new CloudProcess(0L, 2, 2, 2);
+        looseProcess.setComputer(usedLoose);
+        CloudProcess tightProcess = new CloudProcess(1L, 12, 4, 2);
+        tightProcess.setComputer(usedTight);
+        CloudComputerCapacityIndex capacityIndex = new CloudComputerCapacityIndex(
+                Arrays.asList(small, large, usedLoose, usedTight), Arrays.asList(looseProcess, tightProcess));
+        assertEquals(800L, capacityIndex.getUsedComputerCost());
+
+        // The most recently used computer that fits, in the order of the computerList
+        assertSame(usedTight, capacityIndex.findComputer(new CloudProcess(2L, 3, 3, 3)));
+        // The most recent one lacks memory
+        assertSame(usedLoose, capacityIndex.findComputer(new CloudProcess(3L, 3, 29, 3)));
+        assertEquals(2, capacityIndex.getUsedComputerCount());
+        assertSame(usedLoose, capacityIndex.findUsedComputer(new CloudProcess(8L, 5, 3, 3), 0));
+        // Skips the first used computer
+        assertNull(capacityIndex.findUsedComputer(new CloudProcess(9L, 5, 3, 3), 1));
+        // No used computer fits, the large one is cheaper per unit of capacity than the small one
+        assertSame(large, capacityIndex.findComputer(new CloudProcess(4L, 3, 31, 3)));
+        assertNull(capacityIndex.findComputer(new CloudProcess(5L, 33, 1, 1)));
+
+        CloudProcess process = new CloudProcess(6L, 3, 31, 3);
+        capacityIndex.assign(process, large);
+        assertEquals(1500L, capacityIndex.getUsedComputerCost());
+        assertSame(large, capacityIndex.findComputer(new CloudProcess(7L, 29, 33, 21)));
+        assertEquals(0, capacityIndex.getOverloadedCapacity());
+    }
+
+    @Test
+    public void placeLargeProblem() {
+        CloudBalance cloudBalance = new CloudBalanceGenerator(37L).generate(0L, 100_000);
+        List<CloudProcess> processList = cloudBalance.getProcessList();
+        // Some processes are already assigned, they stay where they are
+        CloudComputer firstComputer = cloudBalance.getComputerList().stream()
+                .filter(computer -> computer.getCpuPower() >= 32).findFirst().get();
+        processList.get(0).setComputer(firstComputer);
+
+        new CloudBalanceGreedyPlacer().place(cloudBalance);
+
+        assertSame(firstComputer, processList.get(0).getComputer());
+        Map<CloudComputer, int[]> computerToUsageMap = new HashMap<>();
+        for (CloudProcess process : processList) {
+            assertNotNull(process.getComputer());
+            int[] usage = computerToUsageMap.computeIfAbsent(process.getComputer(), key -> new int[3]);
+            usage[0] += process.getRequiredCpuPower();
+            usage[1] += process.getRequiredMemory();
+            usage[2] += process.getRequiredNetworkBandwidth();
+        }
+        int cost = 0;
+        for (Map.Entry<CloudComputer, int[]> entry : computerToUsageMap.entrySet()) {
+            CloudComputer computer = entry.getKey();
+            int[] usage = entry.getValue();
+            assertTrue(usage[0] <= computer.getCpuPower() && usage[1] <= computer.getMemory()
+                    && usage[2] <= computer.getNetworkBandwidth());
+            cost += computer.getCost();
+        }
+        assertEquals(HardSoftScore.of(0, -cost), cloudBalance.getScore());
+        // Far fewer computers than a computer per 3 processes
+        assertTrue(computerToUsageMap.size() < cloudBalance.getComputerList().size());
+    }
+
+    @Test
+    public void placeKeepsUnplaceableProcessesUnassigned() {
+        CloudComputer computer = new CloudComputer(0L, 4, 8, 4, 120);
+        CloudProcess assignedProcess = new CloudProcess(0L, 3, 1, 1);
+        assignedProcess.setComputer(computer);
+        CloudProcess fittingProcess = new CloudProcess(1L, 1, 1, 1);
+        CloudProcess tooLargeProcess = new CloudProcess(2L, 1, 9, 1);
+        CloudBalance cloudBalance = new CloudBalance(0L, Arrays.asList(computer),
+                Arrays.asList(assignedProcess, fittingProcess, tooLargeProcess));
+
+        new CloudBalanceGreedyPlacer().place(cloudBalance);
+
+        assertSame(computer, fittingProcess.getComputer());
+        assertNull(tooLargeProcess.getComputer());
+        assertEquals(HardSoftScore.ofUninitialized(-1, 0, -120), cloudBalance.getScore());
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.optaplanner.springbootcloudbalancing.solver.move;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.optaplanner.core.api.score.buildin.hardsoft.HardSoftScore;
+import org.optaplanner.core.api.solver.Solver;
+import org.optaplanner.core.api.solver.SolverFactory;
+import org.optaplanner.core.config.heuristic.selector.common.nearby.NearbySelectionConfig;
+import org.optaplanner.core.config.heuristic.selector.entity.EntitySelectorConfig;
+import org.optaplanner.core.config.heuristic.selector.move.composite.UnionMoveSelectorConfig;
+import org.optaplanner.core.config.heuristic.selector.move.generic.ChangeMoveSelectorConfig;
+import org.optaplanner.core.config.heuristic.selector.move.generic.SwapMoveSelectorConfig;
+import org.optaplanner.core.config.localsearch.LocalSearchPhaseConfig;
+import org.optaplanner.core.config.solver.EnvironmentMode;
+import org.optaplanner.core.config.solver.SolverConfig;
+import org.optaplanner.core.config.solver.termination.TerminationConfig;
+import org.optaplanner.core.impl.domain.variable.descriptor.GenuineVariableDescriptor;
+import org.optaplanner.core.impl.heuristic.selector.move.generic.ChangeMove;
+import org.optaplanner.core.impl.heuristic.selector.move.generic.SwapMove;
+import org.optaplanner.core.impl.score.director.InnerScoreDirector;
+import org.optaplanner.springbootcloudbalancing.domain.CloudBalance;
+import org.optaplanner.springbootcloudbalancing.domain.CloudBalanceGenerator;
+import org.optaplanner.springbootcloudbalancing.domain.CloudComputer;
+import org.optaplanner.springbootcloudbalancing.domain.CloudProcess;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CapacityAwareMoveFilterTest {
+
+    private static final String SOLVER_CONFIG = "org/optaplanner/springbootcloudbalancing/solver/cloudBalancingSolverConfig.xml";
+
+    @Test
+    public void remainingCapacityFollowsVariableChanges() {
+        Random random = new Random(37);
+        CloudBalance cloudBalance = new CloudBalanceGenerator(37L).generate(0L, 10, 60);
+        List<CloudComputer> computerList = cloudBalance.getComputerList();
+        List<CloudProcess> processList = cloudBalance.getProcessList();
+        for (CloudProcess process : processList) {
+            process.setComputer(randomComputerOrNull(random, computerList));
+        }
+        InnerScoreDirector<CloudBalance> scoreDirector = createScoreDirector(cloudBalance);
+        ComputerRemainingCapacitySupply supply = ComputerRemainingCapacityDemand.demand(scoreDirector);
+        assertRemainingCapacity(cloudBalance, supply);
+
+        for (int i = 0; i < 1000; i++) {
+            CloudProcess process = processList.get(random.nextInt(processList.size()));
+            scoreDirector.beforeVariableChanged(process, "computer");
+            process.setComputer(randomComputerOrNull(random, computerList));
+            scoreDirector.afterVariableChanged(process, "computer");
+            scoreDirector.triggerVariableListeners();
+            assertRemainingCapacity(cloudBalance, supply);
+        }
+        // Equal demands share the supply
+        assertTrue(supply == ComputerRemainingCapacityDemand.demand(scoreDirector));
+    }
+
+    @Test
+    public void skipMovesThatAddLoadToAnOverloadedComputer() {
+        CloudComputer overloadedComputer = new CloudComputer(0L, 4, 8, 4, 120);
+        CloudComputer freeComputer = new CloudComputer(1L, 4, 8, 4, 120);
+        // Lacks 2 cpu power, has memory and network bandwidth left
+        CloudProcess largeProcess = new CloudProcess(0L, 3, 2, 1);
+        largeProcess.setComputer(overloadedComputer);
+        CloudProcess mediumProcess = new CloudProcess(1L, 3, 2, 1);
+        mediumProcess.setComputer(overloadedComputer);
+        CloudProcess cpuProcess = new CloudProcess(2L, 2, 1, 1);
+        cpuProcess.setComputer(freeComputer);
+        CloudProcess memoryProcess = new CloudProcess(3L, 0, 4, 1);
+        memoryProcess.setComputer(freeComputer);
+        CloudBalance cloudBalance = new CloudBalance(0L, Arrays.asList(overloadedComputer, freeComputer),
+                Arrays.asList(largeProcess, mediumProcess, cpuProcess, memoryProcess));
+        InnerScoreDirector<CloudBalance> scoreDirector = createScoreDirector(cloudBalance);
+        GenuineVariableDescriptor<CloudBalance> variableDescriptor = scoreDirector.getSolutionDescriptor()
+                .findEntityDescriptorOrFail(CloudProcess.class).getGenuineVariableDescriptor("computer");
+        CapacityAwareMoveFilter filter = new CapacityAwareMoveFilter();
+
+        assertFalse(filter.accept(scoreDirector, new ChangeMove<>(cpuProcess, variableDescriptor, overloadedComputer)));
+        // It only needs resources that the computer has left
+        assertTrue(filter.accept(scoreDirector, new ChangeMove<>(memoryProcess, variableDescriptor, overloadedComputer)));
+        assertTrue(filter.accept(scoreDirector, new ChangeMove<>(largeProcess, variableDescriptor, freeComputer)));
+        List<GenuineVariableDescriptor<CloudBalance>> variableDescriptorList
+                = Collections.singletonList(variableDescriptor);
+        // Relieves the overloaded computer
+        assertTrue(filter.accept(scoreDirector, new SwapMove<>(variableDescriptorList, largeProcess, cpuProcess)));
+        // The same cpu power goes back
+        assertTrue(filter.accept(scoreDirector, new SwapMove<>(variableDescriptorList, largeProcess, mediumProcess)));
+
+        // After the move, the free computer is no longer free
+        scoreDirector.beforeVariableChanged(largeProcess, "computer");
+        largeProcess.setComputer(freeComputer);
+        scoreDirector.afterVariableChanged(largeProcess, "computer");
+        scoreDirector.triggerVariableListeners();
+        assertTrue(filter.accept(scoreDirector, new ChangeMove<>(cpuProcess, variableDescriptor, overloadedComputer)));
+        assertFalse(filter.accept(scoreDirector, new ChangeMove<>(mediumProcess, variableDescriptor, freeComputer)));
+    }
+
+    @Test
+    public void nearbyDistanceOfResourceProfiles() {
+        ResourceProfileNearbyDistanceMeter distanceMeter = new ResourceProfileNearbyDistanceMeter();
+        CloudProcess process = new CloudProcess(0L, 4, 8, 2);
+        assertEquals(0.0, distanceMeter.getNearbyDistance(process, new CloudProcess(1L, 4, 8, 2)), 0.0);
+        assertEquals(0.5, distanceMeter.getNearbyDistance(process, new CloudProcess(2L, 2, 8, 2)), 0.0);
+        assertEquals(1.5, distanceMeter.getNearbyDistance(process, new CloudProcess(3L, 4, 16, 0)), 0.0);
+        assertEquals(distanceMeter.getNearbyDistance(new CloudProcess(4L, 2, 4, 1), process),
+                distanceMeter.getNearbyDistance(process, new CloudProcess(4L, 2, 4, 1)), 0.0);
+        assertEquals(0.0, distanceMeter.getNearbyDistance(new CloudProcess(5L, 0, 0, 0),
+                new CloudProcess(6L, 0, 0, 0)), 0.0);
+    }
+
+    @Test
+    public void solveWithCapacityAwareNearbyMoves() {
+        SolverFactory<CloudBalance> solverFactory = SolverFactory.createFromXmlResource(SOLVER_CONFIG,
+                CapacityAwareMoveFilterTest.class.getClassLoader());
+        SolverConfig solverConfig = solverFactory.getSolverConfig();
+        ChangeMoveSelectorConfig changeMoveSelectorConfig = new ChangeMoveSelectorConfig();
+        changeMoveSelectorConfig.setFilterClassList(Collections.singletonList(CapacityAwareMoveFilter.class));
+        EntitySelectorConfig originEntitySelectorConfig = new EntitySelectorConfig();
+        originEntitySelectorConfig.setId("swapOriginSelector");
+        EntitySelectorConfig mimicEntitySelectorConfig = new EntitySelectorConfig();
+        mimicEntitySelectorConfig.setMimicSelectorRef("swapOriginSelector");
+        NearbySelectionConfig nearbySelectionConfig = new NearbySelectionConfig();
+        nearbySelectionConfig.setOriginEntitySelectorConfig(mimicEntitySelectorConfig);
+        nearbySelectionConfig.setNearbyDistanceMeterClass(ResourceProfileNearbyDistanceMeter.class);
+        EntitySelectorConfig nearbyEntitySelectorConfig = new EntitySelectorConfig();
+        nearbyEntitySelectorConfig.setNearbySelectionConfig(nearbySelectionConfig);
+        SwapMoveSelectorConfig swapMoveSelectorConfig = new SwapMoveSelectorConfig();
+        swapMoveSelectorConfig.setEntitySelectorConfig(originEntitySelectorConfig);
+        swapMoveSelectorConfig.setSecondaryEntitySelectorConfig(nearbyEntitySelectorConfig);
+        swapMoveSelectorConfig.setFilterClassList(Collections.singletonList(CapacityAwareMoveFilter.class));
+        LocalSearchPhaseConfig localSearchPhaseConfig = new LocalSearchPhaseConfig();
+        localSearchPhaseConfig.setMoveSelectorConfig(new UnionMoveSelectorConfig(
+                Arrays.asList(changeMoveSelectorConfig, swapMoveSelectorConfig)));
+        solverConfig.setPhaseConfigList(Collections.singletonList(localSearchPhaseConfig));
+        // The filter never changes the working solution, so it cannot corrupt the score
+        solverConfig.setEnvironmentMode(EnvironmentMode.FULL_ASSERT);
+        localSearchPhaseConfig.setTerminationConfig(new TerminationConfig().withStepCountLimit(200));
+        Solver<CloudBalance> solver = solverFactory.buildSolver();
+
+        // Starts overloaded, with every process on the first computers
+        CloudBalance cloudBalance = new CloudBalanceGenerator(37L).generate(0L, 30);
+        List<CloudComputer> computerList = cloudBalance.getComputerList();
+        List<CloudProcess> processList = cloudBalance.getProcessList();
+        for (int i = 0; i < processList.size(); i++) {
+            processList.get(i).setComputer(computerList.get(i % 3));
+        }
+        CloudBalance bestSolution = solver.solve(cloudBalance);
+        HardSoftScore bestScore = (HardSoftScore) bestSolution.getScore();
+        assertTrue(bestScore.isSolutionInitialized());
+        assertTrue(bestScore.getHardScore() > getHardScore(cloudBalance));
+    }
+
+    private static InnerScoreDirector<CloudBalance> createScoreDirector(CloudBalance cloudBalance) {
+        SolverFactory<CloudBalance> solverFactory = SolverFactory.createFromXmlResource(SOLVER_CONFIG,
+                CapacityAwareMoveFilterTest.class.getClassLoader());
+        InnerScoreDirector<CloudBalance> scoreDirector = (InnerScoreDirector<CloudBalance>) solverFactory
+                .buildSolver().getScoreDirectorFactory().buildScoreDirector();
+        scoreDirector.setWorkingSolution(cloudBalance);
+        return scoreDirector;
+    }
+
+    private static int getHardScore(CloudBalance cloudBalance) {
+        // The input problem, which the solver does not modify
+        int hardScore = 0;
+        for (CloudComputer computer : cloudBalance.getComputerList()) {
+            int cpuPowerUsage = 0;
+            int memoryUsage = 0;
+            int networkBandwidthUsage = 0;
+            for (CloudProcess process : cloudBalance.getProcessList()) {
+                if (process.getComputer() == computer) {
+                    cpuPowerUsage += process.getRequiredCpuPower();
+                    memoryUsage += process.getRequiredMemory();
+                    networkBandwidthUsage += process.getRequiredNetworkBandwidth();
+                }
+            }
+            hardScore -= Math.max(0, cpuPowerUsage - computer.getCpuPower())
+                    + Math.max(0, memoryUsage - computer.getMemory())
+                    + Math.max(0, networkBandwidthUsage - computer.getNetworkBandwidth());
+        }
+        return hardScore;
+    }
+
+    private static CloudComputer randomComputerOrNull(Random random, List<CloudComputer> computerList) {
+        int index = random.nextInt(computerList.size() + 1);
+        return index == computerList.size() ? null : computerList.get(index);
+    }
+
+    private static void assertRemainingCapacity(CloudBalance cloudBalance,
+            ComputerRemainingCapacitySupply supply) {
+        for (CloudComputer computer : cloudBalance.getComputerList()) {
+            int[] expectedRemainingCapacity = {computer.getCpuPower(), computer.getMemory(),
+                    computer.getNetworkBandwidth()};
+            for (CloudProcess process : cloudBalance.getProcessList()) {
+                if (process.getComputer() == computer) {
+                    expectedRemainingCapacity[0] -= process.getRequiredCpuPower();
+                    expectedRemainingCapacity[1] -= process.getRequiredMemory();
+                    expectedRemainingCapacity[2] -= process.getRequiredNetworkBandwidth();
+                }
+            }
+            assertArrayEquals(expectedRemainingCapacity, supply.getRemainingCapacity(computer));
+        }
+    }
+}
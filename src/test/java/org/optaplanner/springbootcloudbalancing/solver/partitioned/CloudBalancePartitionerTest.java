@@ -0,0 +1,106 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.optaplanner.springbootcloudbalancing.solver.partitioned;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.optaplanner.core.api.solver.SolverFactory;
+import org.optaplanner.core.impl.score.director.ScoreDirector;
+import org.optaplanner.springbootcloudbalancing.domain.CloudBalance;
+import org.optaplanner.springbootcloudbalancing.domain.CloudBalanceGenerator;
+import org.optaplanner.springbootcloudbalancing.domain.CloudComputer;
+import org.optaplanner.springbootcloudbalancing.domain.CloudProcess;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CloudBalancePartitionerTest {
+
+    private static final String SOLVER_CONFIG = "org/optaplanner/springbootcloudbalancing/solver/cloudBalancingSolverConfig.xml";
+
+    @Test
+    public void splitIntoCapacityBalancedParts() {
+        CloudBalance cloudBalance = new CloudBalanceGenerator(37L).generate(0L, 40, 400);
+        // Warm start: these stay with their computer
+        List<CloudProcess> processList = cloudBalance.getProcessList();
+        for (int i = 0; i < 20; i++) {
+            processList.get(i).setComputer(cloudBalance.getComputerList().get(i));
+        }
+        CloudBalancePartitioner partitioner = new CloudBalancePartitioner();
+        partitioner.setProcessesPerPart(100);
+        List<CloudBalance> partList = partitioner.splitWorkingSolution(createScoreDirector(cloudBalance), null);
+
+        assertEquals(4, partList.size());
+        Set<Long> computerIdSet = new HashSet<>();
+        Set<Long> processIdSet = new HashSet<>();
+        double totalCapacity = 0.0;
+        double minCapacity = Double.MAX_VALUE;
+        double maxCapacity = 0.0;
+        for (CloudBalance part : partList) {
+            Set<CloudComputer> partComputerSet = new HashSet<>(part.getComputerList());
+            double capacity = 0.0;
+            for (CloudComputer computer : part.getComputerList()) {
+                assertTrue(computerIdSet.add(computer.getId()));
+                capacity += computer.getCpuPower();
+            }
+            for (CloudProcess process : part.getProcessList()) {
+                assertTrue(processIdSet.add(process.getId()));
+                CloudProcess originalProcess = processList.get((int) process.getId());
+                assertNotSame(originalProcess, process);
+                if (originalProcess.getComputer() == null) {
+                    assertNull(process.getComputer());
+                } else {
+                    assertTrue(partComputerSet.contains(process.getComputer()));
+                    assertEquals(originalProcess.getComputer().getId(), process.getComputer().getId());
+                }
+            }
+            totalCapacity += capacity;
+            minCapacity = Math.min(minCapacity, capacity);
+            maxCapacity = Math.max(maxCapacity, capacity);
+        }
+        assertEquals(cloudBalance.getComputerList().size(), computerIdSet.size());
+        assertEquals(processList.size(), processIdSet.size());
+        assertTrue("The parts are not capacity-balanced (" + minCapacity + " to " + maxCapacity + ").",
+                maxCapacity - minCapacity < 0.2 * totalCapacity / partList.size());
+    }
+
+    @Test
+    public void neverMorePartsThanComputers() {
+        CloudBalance cloudBalance = new CloudBalanceGenerator(37L).generate(0L, 2, 100);
+        CloudBalancePartitioner partitioner = new CloudBalancePartitioner();
+        partitioner.setProcessesPerPart(10);
+        List<CloudBalance> partList = partitioner.splitWorkingSolution(createScoreDirector(cloudBalance), null);
+
+        assertEquals(2, partList.size());
+        assertEquals(100, partList.get(0).getProcessList().size() + partList.get(1).getProcessList().size());
+    }
+
+    private static ScoreDirector<CloudBalance> createScoreDirector(CloudBalance cloudBalance) {
+        SolverFactory<CloudBalance> solverFactory = SolverFactory.createFromXmlResource(SOLVER_CONFIG,
+                CloudBalancePartitionerTest.class.getClassLoader());
+        ScoreDirector<CloudBalance> scoreDirector = solverFactory.buildSolver().getScoreDirectorFactory()
+                .buildScoreDirector();
+        scoreDirector.setWorkingSolution(cloudBalance);
+        return scoreDirector;
+    }
+}
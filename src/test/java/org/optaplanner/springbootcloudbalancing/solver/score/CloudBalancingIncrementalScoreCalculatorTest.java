@@ -0,0 +1,134 @@
+/*
+ * Copyright 2019 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.optaplanner.springbootcloudbalancing.solver.score;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.optaplanner.core.api.score.buildin.hardsoft.HardSoftScore;
+import org.optaplanner.core.api.solver.Solver;
+import org.optaplanner.core.api.solver.SolverFactory;
+import org.optaplanner.core.config.score.director.ScoreDirectorFactoryConfig;
+import org.optaplanner.core.config.solver.EnvironmentMode;
+import org.optaplanner.core.config.solver.SolverConfig;
+import org.optaplanner.core.config.solver.termination.TerminationConfig;
+import org.optaplanner.springbootcloudbalancing.domain.CloudBalance;
+import org.optaplanner.springbootcloudbalancing.domain.CloudComputer;
+import org.optaplanner.springbootcloudbalancing.domain.CloudProcess;
+
+import static org.junit.Assert.assertEquals;
+
+public class CloudBalancingIncrementalScoreCalculatorTest {
+
+    private static final String SOLVER_CONFIG = "org/optaplanner/springbootcloudbalancing/solver/cloudBalancingSolverConfig.xml";
+
+    @Test
+    public void incrementalScoreMatchesBruteForceScore() {
+        Random random = new Random(37);
+        CloudBalance cloudBalance = generateCloudBalance(random, 20, 200);
+        List<CloudComputer> computerList = cloudBalance.getComputerList();
+        for (CloudProcess process : cloudBalance.getProcessList()) {
+            process.setComputer(randomComputerOrNull(random, computerList));
+        }
+
+        CloudBalancingIncrementalScoreCalculator scoreCalculator = new CloudBalancingIncrementalScoreCalculator();
+        scoreCalculator.resetWorkingSolution(cloudBalance);
+        assertEquals(getExpectedHardSoftScore(cloudBalance), scoreCalculator.calculateScore());
+
+        List<CloudProcess> processList = cloudBalance.getProcessList();
+        for (int i = 0; i < 10_000; i++) {
+            CloudProcess process = processList.get(random.nextInt(processList.size()));
+            scoreCalculator.beforeVariableChanged(process, "computer");
+            process.setComputer(randomComputerOrNull(random, computerList));
+            scoreCalculator.afterVariableChanged(process, "computer");
+            assertEquals("Score corrupted after " + i + " changes.",
+                    getExpectedHardSoftScore(cloudBalance), scoreCalculator.calculateScore());
+        }
+    }
+
+    @Test
+    public void solveInFullAssertModeAgainstScoreRules() {
+        SolverFactory<CloudBalance> solverFactory = SolverFactory.createFromXmlResource(SOLVER_CONFIG,
+                CloudBalancingIncrementalScoreCalculatorTest.class.getClassLoader());
+        SolverConfig solverConfig = solverFactory.getSolverConfig();
+        ScoreDirectorFactoryConfig scoreRulesConfig = solverConfig.getScoreDirectorFactoryConfig();
+        ScoreDirectorFactoryConfig incrementalConfig = new ScoreDirectorFactoryConfig();
+        incrementalConfig.setIncrementalScoreCalculatorClass(CloudBalancingIncrementalScoreCalculator.class);
+        incrementalConfig.setInitializingScoreTrend(scoreRulesConfig.getInitializingScoreTrend());
+        incrementalConfig.setAssertionScoreDirectorFactory(scoreRulesConfig);
+        solverConfig.setScoreDirectorFactoryConfig(incrementalConfig);
+        solverConfig.setEnvironmentMode(EnvironmentMode.FULL_ASSERT);
+        solverConfig.setTerminationConfig(new TerminationConfig().withSecondsSpentLimit(3L));
+        Solver<CloudBalance> solver = solverFactory.buildSolver();
+
+        CloudBalance bestSolution = solver.solve(generateCloudBalance(new Random(37), 4, 12));
+        assertEquals(getExpectedHardSoftScore(bestSolution), bestSolution.getScore());
+    }
+
+    private static CloudBalance generateCloudBalance(Random random, int computerListSize, int processListSize) {
+        List<CloudComputer> computerList = new ArrayList<>(computerListSize);
+        for (int i = 0; i < computerListSize; i++) {
+            computerList.add(new CloudComputer(i, random.nextInt(20) + 1, random.nextInt(20) + 1,
+                    random.nextInt(20) + 1, random.nextInt(10) * 10));
+        }
+        List<CloudProcess> processList = new ArrayList<>(processListSize);
+        for (int i = 0; i < processListSize; i++) {
+            processList.add(new CloudProcess(i, random.nextInt(10), random.nextInt(10), random.nextInt(10)));
+        }
+        return new CloudBalance(0L, computerList, processList);
+    }
+
+    private static CloudComputer randomComputerOrNull(Random random, List<CloudComputer> computerList) {
+        int index = random.nextInt(computerList.size() + 1);
+        return index == computerList.size() ? null : computerList.get(index);
+    }
+
+    private static HardSoftScore getExpectedHardSoftScore(CloudBalance cloudBalance) {
+        int expectedHardScore = 0;
+        int expectedSoftScore = 0;
+        for (CloudComputer computer : cloudBalance.getComputerList()) {
+            int totalCpuPower = 0;
+            int totalMemory = 0;
+            int totalBandwidth = 0;
+            boolean used = false;
+            for (CloudProcess process : cloudBalance.getProcessList()) {
+                if (process.getComputer() == computer) {
+                    totalCpuPower += process.getRequiredCpuPower();
+                    totalMemory += process.getRequiredMemory();
+                    totalBandwidth += process.getRequiredNetworkBandwidth();
+                    used = true;
+                }
+            }
+
+            if (totalCpuPower > computer.getCpuPower()) {
+                expectedHardScore += computer.getCpuPower() - totalCpuPower;
+            }
+            if (totalMemory > computer.getMemory()) {
+                expectedHardScore += computer.getMemory() - totalMemory;
+            }
+            if (totalBandwidth > computer.getNetworkBandwidth()) {
+                expectedHardScore += computer.getNetworkBandwidth() - totalBandwidth;
+            }
+            if (used) {
+                expectedSoftScore -= computer.getCost();
+            }
+        }
+        return HardSoftScore.of(expectedHardScore, expectedSoftScore);
+    }
+}